@@ -0,0 +1,44 @@
+package com.knkevin.model_tools;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+
+/**
+ * The common configuration of this mod, stored in config/model_tools-common.toml.
+ */
+public class Config {
+    private static final ForgeConfigSpec.Builder BUILDER = new ForgeConfigSpec.Builder();
+
+    /**
+     * The number of bits per color channel of the table used to match colors to blocks, when the palette is rebuilt from resource packs.
+     */
+    public static final ForgeConfigSpec.IntValue PALETTE_RESOLUTION = BUILDER
+            .comment("Bits per color channel of the table used to match texture colors to blocks.",
+                    "Higher values match colors more closely, using 2^(3 * bits) table entries.",
+                    "0 matches every color exactly, at a higher cost per block.",
+                    "Only used by palettes rebuilt from resource packs. The bundled quantized palette has a fixed resolution.")
+            .defineInRange("paletteResolution", 6, 0, 7);
+
+    /**
+     * Whether block colors are read from the textures of the loaded resource packs.
+     */
+    public static final ForgeConfigSpec.BooleanValue RESOURCE_PACK_PALETTE = BUILDER
+            .comment("Match colors to blocks using the textures of the loaded resource packs, rebuilt in the background after every resource reload.",
+                    "The bundled palette is used until the first rebuild finishes. Only affects models placed from this client's singleplayer worlds.")
+            .define("resourcePackPalette", true);
+
+    /**
+     * The memory budget of decoded textures kept between placements, in megabytes.
+     */
+    public static final ForgeConfigSpec.IntValue TEXTURE_CACHE_SIZE = BUILDER
+            .comment("Megabytes of decoded model textures kept in memory, so placing the same model again does not decode them again.")
+            .defineInRange("textureCacheSize", 256, 0, 8192);
+
+    /**
+     * Whether textures are sampled with bilinear filtering.
+     */
+    public static final ForgeConfigSpec.BooleanValue BILINEAR_TEXTURES = BUILDER
+            .comment("Blend the four nearest texture pixels when picking the color of a block, instead of using the nearest pixel.")
+            .define("bilinearTextures", false);
+
+    public static final ForgeConfigSpec SPEC = BUILDER.build();
+}
@@ -5,7 +5,9 @@ import com.knkevin.model_tools.items.ModItems;
 import com.knkevin.model_tools.models.Model;
 import com.knkevin.model_tools.packets.PacketHandler;
 import net.minecraftforge.eventbus.api.IEventBus;
+import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 
 import javax.annotation.Nullable;
@@ -13,7 +15,7 @@ import javax.annotation.Nullable;
 @Mod(Main.MODID)
 public class Main {
     @Nullable
-    public static Model model;
+    public static volatile Model model;
     public static final String MODID = "model_tools";
 
     public Main() {
@@ -22,5 +24,6 @@ public class Main {
         ModItems.register(modEventBus);
         ModCommandArguments.register(modEventBus);
         PacketHandler.init();
+        ModLoadingContext.get().registerConfig(ModConfig.Type.COMMON, Config.SPEC);
     }
 }
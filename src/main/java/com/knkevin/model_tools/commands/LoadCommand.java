@@ -5,11 +5,14 @@ import com.knkevin.model_tools.models.Model;
 import com.knkevin.model_tools.models.ObjModel;
 import com.knkevin.model_tools.models.StlAsciiModel;
 import com.knkevin.model_tools.models.StlBinaryModel;
+import com.knkevin.model_tools.models.utils.LoadProgress;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import net.minecraft.client.Minecraft;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
 import org.apache.commons.io.FilenameUtils;
 import org.openjdk.nashorn.internal.runtime.regexp.joni.exception.ValueException;
 
@@ -17,31 +20,129 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.*;
 
 /**
  * Handles logic dealing with loading a new Model through a command.
  */
 public class LoadCommand {
     /**
-     * Attempts to load a Model from the file specified by the command.
+     * Loads Models one at a time, off of the server thread.
+     */
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Model Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Periodically reports the progress of the current load.
+     */
+    private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Model Load Progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The number of milliseconds between progress reports.
+     */
+    private static final long REPORT_INTERVAL = 500;
+
+    /**
+     * The progress of the Model currently being loaded, or null if no Model is being loaded.
+     * Only accessed on the server thread.
+     */
+    private static LoadProgress currentLoad;
+
+    /**
+     * Starts loading a Model from the file specified by the command in the background.
+     * The loaded Model replaces the current Model once it is completely loaded.
      * @param command The executed command.
-     * @return A 1 or 0 representing the success of the command.
+     * @return A 1 or 0 representing whether the load was started.
      */
     protected static int load(CommandContext<CommandSourceStack> command) {
+        CommandSourceStack source = command.getSource();
         if (!Minecraft.getInstance().isSingleplayer()) {
-            command.getSource().sendSystemMessage(Component.literal("Error: Models can only be loaded in single-player!"));
+            source.sendSystemMessage(Component.literal("Error: Models can only be loaded in single-player!"));
+            return 0;
+        }
+        if (currentLoad != null) {
+            source.sendSystemMessage(Component.literal("Error: A model is already loading. Use /model cancel to stop it."));
             return 0;
         }
-        try {
-            String fileName = StringArgumentType.getString(command, "filename");
-            Main.model = loadModel(new File("models/" + fileName));
-            command.getSource().sendSystemMessage(Component.literal(fileName + " loaded successfully."));
-            return 1;
-        } catch (Exception e) {
-            command.getSource().sendSystemMessage(Component.literal("Error: The model could not be loaded."));
-            e.printStackTrace();
+        String fileName = StringArgumentType.getString(command, "filename");
+        File file = new File("models/" + fileName);
+        LoadProgress progress = new LoadProgress(file.length());
+        currentLoad = progress;
+        MinecraftServer server = source.getServer();
+        ServerPlayer player = source.getPlayer();
+        ScheduledFuture<?> reporter = REPORTER.scheduleAtFixedRate(() -> server.execute(() -> {
+            if (currentLoad == progress && player != null) player.displayClientMessage(describe(fileName, progress), true);
+        }), REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+        loadModelAsync(file, progress).whenComplete((model, throwable) -> {
+            reporter.cancel(false);
+            //Swap in the new Model on the server thread, where commands read it.
+            server.execute(() -> {
+                currentLoad = null;
+                if (model != null) {
+                    Main.model = model;
+                    source.sendSystemMessage(Component.literal(fileName + " loaded successfully."));
+                } else if (progress.isCancelled()) {
+                    source.sendSystemMessage(Component.literal("Loading " + fileName + " was cancelled."));
+                } else {
+                    source.sendSystemMessage(Component.literal("Error: The model could not be loaded."));
+                    throwable.printStackTrace();
+                }
+            });
+        });
+        source.sendSystemMessage(Component.literal("Loading " + fileName + "..."));
+        return 1;
+    }
+
+    /**
+     * Cancels the Model currently being loaded. The current Model is kept.
+     * @param command The executed command.
+     * @return A 1 or 0 representing whether a load was cancelled.
+     */
+    protected static int cancel(CommandContext<CommandSourceStack> command) {
+        if (currentLoad == null) {
+            command.getSource().sendSystemMessage(Component.literal("Error: No model is being loaded."));
             return 0;
         }
+        currentLoad.cancel();
+        command.getSource().sendSystemMessage(Component.literal("Cancelling model load..."));
+        return 1;
+    }
+
+    /**
+     * @param fileName The name of the file being loaded.
+     * @param progress The progress of the load.
+     * @return A message describing the progress of the load.
+     */
+    private static Component describe(String fileName, LoadProgress progress) {
+        int percent = (int) (progress.getFraction() * 100);
+        if (progress.getStage() == LoadProgress.Stage.VOXELIZING)
+            return Component.literal("Voxelizing " + fileName + ": " + percent + "%");
+        return Component.literal(String.format("Reading %s: %d%% (%d/%d MB, %,d faces)", fileName, percent,
+                progress.getBytesRead() >> 20, progress.getTotalBytes() >> 20, progress.getFacesParsed()));
+    }
+
+    /**
+     * Loads a Model on a background thread.
+     * @param file A File to a 3D model.
+     * @param progress Receives the progress of the load, and may cancel it.
+     * @return A future completed with the Model, or completed exceptionally if the load failed or was cancelled.
+     */
+    public static CompletableFuture<Model> loadModelAsync(File file, LoadProgress progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadModel(file, progress);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, LOADER);
     }
 
     /**
@@ -51,13 +152,25 @@ public class LoadCommand {
      * @throws ValueException The File was not an stl or obj file.
      */
     public static Model loadModel(File file) throws IOException, ValueException {
+        return loadModel(file, null);
+    }
+
+    /**
+     * @param file A File to a 3D model.
+     * @param progress Receives the progress of the load, and may cancel it. May be null.
+     * @return A Model constructed from the file.
+     * @throws IOException The File could not be opened.
+     * @throws ValueException The File was not an stl or obj file.
+     * @throws java.util.concurrent.CancellationException The load was cancelled through the progress.
+     */
+    public static Model loadModel(File file, LoadProgress progress) throws IOException, ValueException {
         String extension = FilenameUtils.getExtension(file.getName()).toLowerCase();
         if (extension.equals("obj"))
-            return new ObjModel(file);
+            return new ObjModel(file, progress);
         if (extension.equals("stl")) {
-            if (isStlAscii(file))
-                return new StlAsciiModel(file);
-            return new StlBinaryModel(file);
+            if (isStlAscii(file) && !StlBinaryModel.hasValidLength(file))
+                return new StlAsciiModel(file, progress);
+            return new StlBinaryModel(file, progress);
         }
         throw new ValueException("Error: The file is not a valid model type.");
     }
@@ -24,6 +24,7 @@ public class ModelCommand {
     public ModelCommand(CommandDispatcher<CommandSourceStack> dispatcher) {
         dispatcher.register(literal("model")
             .then(literal("load").then(argument("filename", ModelFileArgument.modelFileArgument()).executes(LoadCommand::load)))
+            .then(literal("cancel").executes(LoadCommand::cancel))
             .then(literal("place").executes(PlaceCommand::place))
             .then(literal("undo").executes(UndoCommand::undo))
             .then(literal("scale").then(argument("applySet", ApplySetArgument.applySetArg())
@@ -1,11 +1,15 @@
 package com.knkevin.model_tools.events;
 
+import com.knkevin.model_tools.Config;
 import com.knkevin.model_tools.Main;
 import com.knkevin.model_tools.key_bindings.KeyActions;
 import com.knkevin.model_tools.key_bindings.KeyBindings;
+import com.knkevin.model_tools.models.utils.Palette;
 import com.knkevin.model_tools.renderer.BoxRenderer;
+import net.minecraft.server.packs.resources.ResourceManagerReloadListener;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.client.event.InputEvent;
+import net.minecraftforge.client.event.RegisterClientReloadListenersEvent;
 import net.minecraftforge.client.event.RegisterKeyMappingsEvent;
 import net.minecraftforge.client.event.RenderLevelStageEvent;
 import net.minecraftforge.event.TickEvent;
@@ -34,8 +38,10 @@ public class ClientEvents {
 
         @SubscribeEvent
         public static void clientTickEvent(TickEvent.ClientTickEvent event) {
-            if (event.phase == TickEvent.Phase.END)
+            if (event.phase == TickEvent.Phase.END) {
                 KeyActions.checkKeys();
+                if (Main.model != null) Main.model.updateBlockFacesWhenIdle();
+            }
         }
     }
 
@@ -56,6 +62,15 @@ public class ClientEvents {
             event.register(KeyBindings.Z_AXIS_KEY);
             event.register(KeyBindings.TOGGLE_VIEW_KEY);
         }
+
+        @SubscribeEvent
+        public static void registerReloadListeners(RegisterClientReloadListenersEvent event) {
+            //Only queues the rebuild, so resource reloads and startup take as long as before.
+            event.registerReloadListener((ResourceManagerReloadListener) resourceManager -> {
+                if (Config.SPEC.isLoaded() && Config.RESOURCE_PACK_PALETTE.get())
+                    Palette.rebuildFromResources(resourceManager, Config.PALETTE_RESOLUTION.get());
+            });
+        }
     }
 }
 
@@ -23,7 +23,8 @@ public class HammerModes {
 	}
 	public enum ViewMode {
 		BOX(),
-		BLOCKS()
+		BLOCKS(),
+		MESH()
 	}
 
 	public static Axis selectedAxis = Axis.Y;
@@ -83,13 +83,20 @@ public class KeyActions {
 
     public static void toggleViewMode(Player player) {
         if (Main.model == null) return;
-        if (viewMode == ViewMode.BOX) {
-            viewMode = ViewMode.BLOCKS;
-            Main.model.applyScale(1);
-            player.sendSystemMessage(Component.literal("Viewing blocks preview."));
-        } else {
-            viewMode = ViewMode.BOX;
-            player.sendSystemMessage(Component.literal("Viewing box outline."));
+        switch (viewMode) {
+            case BOX -> {
+                viewMode = ViewMode.BLOCKS;
+                Main.model.applyScale(1);
+                player.sendSystemMessage(Component.literal("Viewing blocks preview."));
+            }
+            case BLOCKS -> {
+                viewMode = ViewMode.MESH;
+                player.sendSystemMessage(Component.literal("Viewing mesh while transforming, then blocks preview."));
+            }
+            case MESH -> {
+                viewMode = ViewMode.BOX;
+                player.sendSystemMessage(Component.literal("Viewing box outline."));
+            }
         }
     }
 
@@ -1,7 +1,12 @@
 package com.knkevin.model_tools.models;
 
 import com.knkevin.model_tools.items.HammerModes;
-import com.knkevin.model_tools.models.utils.Point;
+import com.knkevin.model_tools.models.utils.LoadProgress;
+import com.knkevin.model_tools.models.utils.Mesh;
+import com.knkevin.model_tools.models.voxels.VoxelBuffer;
+import com.knkevin.model_tools.models.voxels.VoxelSnapshot;
+import com.knkevin.model_tools.models.voxels.VoxelStore;
+import com.knkevin.model_tools.models.voxels.Voxelizer;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.world.level.Level;
@@ -13,13 +18,39 @@ import org.joml.Vector3f;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a 3D model.
  */
 public abstract class Model {
+    /**
+     * Recalculates the previews of Models one at a time, off of the thread that changed the transformation.
+     */
+    private static final ExecutorService PREVIEW_WORKER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Model Preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The number of milliseconds the transformation must stay unchanged in the MESH view mode before the preview is voxelized.
+     */
+    public static final long IDLE_DELAY = 300;
+
+    /**
+     * The side length in blocks of the voxels of the first, coarsest pass of a progressive preview update.
+     */
+    private static final int MAX_PROGRESSIVE_VOXEL_SIZE = 4;
+
+    /**
+     * A coarse pass is only run if the transformed Model still spans at least this many of its voxels, since smaller previews are fast enough to skip it.
+     */
+    private static final float PROGRESSIVE_MIN_EXTENT = 64;
+
     /**
      * This Model's rotation represented as a quaternion.
      */
@@ -40,18 +71,63 @@ public abstract class Model {
      */
     public final Vector3f minCorner = new Vector3f(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE), maxCorner = new Vector3f(Float.MIN_VALUE, Float.MIN_VALUE, Float.MIN_VALUE);
 
+    /**
+     * The vertices and faces of this Model.
+     */
+    protected Mesh mesh;
+
     /**
      * To be used for rendering the preview of this model.
-     * Points representing block coordinates are mapped to bytes.
-     * The bits of each byte determine whether the face is to be rendered.
+     * Holds the block coordinates along with bits that determine whether each face is to be rendered.
+     * Swapped for a new, completely built snapshot on each update, so the renderer never sees one being filled.
+     */
+    private final AtomicReference<VoxelSnapshot> blockFaces = new AtomicReference<>(VoxelSnapshot.EMPTY);
+
+    /**
+     * The vertex positions of the Mesh after the last preview transformation. Reused by each update of the preview.
+     * Only accessed by the preview worker, or by the loading thread before this Model is published.
+     */
+    private float[] previewPositions;
+
+    /**
+     * Cancels the latest requested preview update. Any other update is stale and gets cancelled or skipped.
+     */
+    private final AtomicReference<LoadProgress> previewUpdate = new AtomicReference<>();
+
+    /**
+     * The latest preview update that finished, or null if none has.
+     */
+    private volatile LoadProgress finishedUpdate;
+
+    /**
+     * The time in milliseconds of the latest transformation while in the MESH view mode.
+     */
+    private volatile long lastTransformTime;
+
+    /**
+     * Whether the transformation changed in the MESH view mode without a preview update being requested yet.
      */
-    public final ConcurrentMap<Point, Byte> blockFaces = new ConcurrentHashMap<>();
+    private volatile boolean blockFacesStale;
 
     /**
      * Stores block coordinates mapped to BlockStates, representing the blocks before the model was placed.
      */
     private final Map<BlockPos, BlockState> undo = new HashMap<>();
 
+    /**
+     * @return The vertices and faces of this Model.
+     */
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * @return The latest complete snapshot of the voxels of this Model's preview.
+     */
+    public VoxelSnapshot getBlockFaces() {
+        return blockFaces.get();
+    }
+
     /**
      * @return A 4x4 transformation from this Model's rotation and scale.
      */
@@ -64,15 +140,126 @@ public abstract class Model {
      */
     public abstract Map<BlockPos, BlockState> getBlocks();
 
+    /**
+     * Sets the Mesh of this Model and updates the size of the Model to fit it.
+     * @param mesh The vertices and faces of this Model.
+     */
+    protected void setMesh(Mesh mesh) {
+        this.mesh = mesh;
+        mesh.getBounds(minCorner, maxCorner);
+    }
+
     /**
      * Centers this Model.
      */
-    protected abstract void centerModel();
+    protected void centerModel() {
+        Vector3f center = maxCorner.sub(minCorner, new Vector3f()).div(2);
+        mesh.translate(-(minCorner.x + center.x), -(minCorner.y + center.y), -(minCorner.z + center.z));
+        center.mul(-1, minCorner);
+        center.mul(1, maxCorner);
+    }
+
+    /**
+     * Recalculates the blocks and faces to be rendered by this Model's preview on a background worker.
+     * Large previews are voxelized progressively: coarse passes with 4x4x4 and then 2x2x2 blocks per voxel are published first, then the full resolution.
+     * Only the latest request is voxelized: any update still running is cancelled between or during passes, and requests still waiting are skipped.
+     * The preview keeps showing the last published result until the next pass is ready.
+     */
+    protected void updateBlockFaces() {
+        //The transformation is captured now, since it keeps changing while the worker runs.
+        Matrix4f matrix = getTransformationMatrix();
+        LoadProgress update = new LoadProgress(0);
+        LoadProgress previous = previewUpdate.getAndSet(update);
+        if (previous != null) previous.cancel();
+        PREVIEW_WORKER.execute(() -> {
+            if (previewUpdate.get() != update) return;
+            try {
+                for (int voxelSize = firstVoxelSize(matrix); voxelSize >= 1; voxelSize >>= 1) updateBlockFaces(matrix, voxelSize, update);
+                finishedUpdate = update;
+            } catch (CancellationException ignored) {
+            } catch (IllegalArgumentException e) {
+                //The transformed model reaches past the coordinates a preview can hold, so the last preview is kept.
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * @param matrix The transformation to preview.
+     * @return The side length in blocks of the voxels of the first pass of a progressive preview update.
+     */
+    private int firstVoxelSize(Matrix4f matrix) {
+        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY), max = new Vector3f(Float.NEGATIVE_INFINITY), corner = new Vector3f();
+        for (int mask = 0; mask < 8; ++mask) {
+            corner.set((mask & 1) == 0 ? minCorner.x : maxCorner.x, (mask & 2) == 0 ? minCorner.y : maxCorner.y, (mask & 4) == 0 ? minCorner.z : maxCorner.z);
+            matrix.transformPosition(corner);
+            min.min(corner);
+            max.max(corner);
+        }
+        float extent = max.sub(min).get(max.maxComponent());
+        int voxelSize = 1;
+        while (voxelSize < MAX_PROGRESSIVE_VOXEL_SIZE && extent / (voxelSize * 2) >= PROGRESSIVE_MIN_EXTENT) voxelSize *= 2;
+        return voxelSize;
+    }
+
+    /**
+     * Updates the preview after a change to the rotation or scale, depending on the view mode.
+     * In the BLOCKS view mode the preview is recalculated right away.
+     * In the MESH view mode the change is only recorded, and the preview is recalculated once the transformation has been idle for IDLE_DELAY.
+     */
+    protected void onTransformChanged() {
+        switch (HammerModes.viewMode) {
+            case BLOCKS -> this.updateBlockFaces();
+            case MESH -> {
+                lastTransformTime = System.currentTimeMillis();
+                blockFacesStale = true;
+            }
+        }
+    }
+
+    /**
+     * Requests a preview update if the transformation changed in the MESH view mode and has since been idle for IDLE_DELAY.
+     * Called every client tick.
+     */
+    public void updateBlockFacesWhenIdle() {
+        if (!blockFacesStale || System.currentTimeMillis() - lastTransformTime < IDLE_DELAY) return;
+        blockFacesStale = false;
+        this.updateBlockFaces();
+    }
+
+    /**
+     * @return True if the preview shows the current transformation, false if a change is still waiting or being voxelized.
+     */
+    public boolean isBlockFacesCurrent() {
+        return !blockFacesStale && previewUpdate.get() == finishedUpdate;
+    }
 
     /**
      * Recalculates the blocks and faces to be rendered by this Model's preview.
+     * @param progress Receives the number of faces voxelized. May be null.
+     * @throws CancellationException The load reporting progress was cancelled.
      */
-    protected abstract void updateBlockFaces();
+    protected void updateBlockFaces(LoadProgress progress) {
+        updateBlockFaces(getTransformationMatrix(), 1, progress);
+    }
+
+    /**
+     * Recalculates the blocks and faces to be rendered by this Model's preview.
+     * @param matrix The transformation to preview.
+     * @param voxelSize The side length in blocks of each voxel.
+     * @param progress Receives the number of faces voxelized. May be null.
+     * @throws CancellationException The load or update reporting progress was cancelled.
+     */
+    private void updateBlockFaces(Matrix4f matrix, int voxelSize, LoadProgress progress) {
+        if (progress != null) progress.checkCancelled();
+        //Shrinks the model about the origin, so a point lands in the voxel its block divided by voxelSize truncates to, and the passes line up.
+        Matrix4f voxelMatrix = voxelSize == 1 ? matrix : new Matrix4f().scaling(1f / voxelSize).mul(matrix);
+        previewPositions = mesh.transformPositions(voxelMatrix, previewPositions);
+        VoxelBuffer voxels = Voxelizer.voxelize(mesh, previewPositions, false, progress);
+        VoxelSnapshot snapshot = VoxelSnapshot.of(VoxelStore.of(voxels), voxelSize, blockFaces.get());
+        if (progress != null) progress.checkCancelled();
+        blockFaces.set(snapshot);
+    }
 
     /**
      * Converts the model into Minecraft by representing it as blocks.
@@ -112,7 +299,7 @@ public abstract class Model {
     public void applyRotation(float x_axis, float y_axis, float z_axis) {
         float x_angle = Math.toRadians(x_axis), y_angle = Math.toRadians(y_axis), z_angle = Math.toRadians(z_axis);
         rotation.rotateXYZ(-x_angle, -y_angle, -z_angle);
-        if (HammerModes.viewMode == HammerModes.ViewMode.BLOCKS) this.updateBlockFaces();
+        this.onTransformChanged();
     }
 
     /**
@@ -135,7 +322,7 @@ public abstract class Model {
     public void setScale(float xScale, float yScale, float zScale) {
         this.scale.set(xScale, yScale, zScale);
         this.scale.max(new Vector3f(0,0,0));
-        if (HammerModes.viewMode == HammerModes.ViewMode.BLOCKS) this.updateBlockFaces();
+        this.onTransformChanged();
     }
 
     /**
@@ -204,35 +391,4 @@ public abstract class Model {
             case "z" -> position.add(0,0,distance);
         }
     }
-
-    /**
-     * Iterates through blockFaces and sets the appropriate bits to 1 if the face is to be rendered, or 0 otherwise.
-     */
-    protected void cullAdjacentFaces() {
-        Point adjacent = new Point(0,0,0);
-        for (Map.Entry<Point, Byte> entry: blockFaces.entrySet()) {
-            Point p = entry.getKey();
-            byte value = entry.getValue();
-            adjacent.x = p.x - 1;
-            adjacent.y = p.y;
-            adjacent.z = p.z;
-
-            if (blockFaces.containsKey(adjacent)) value -= 32;
-            adjacent.x = p.x + 1;
-            if (blockFaces.containsKey(adjacent)) value -= 16;
-            adjacent.x = p.x;
-
-            adjacent.y = p.y - 1;
-            if (blockFaces.containsKey(adjacent)) value -= 8;
-            adjacent.y = p.y + 1;
-            if (blockFaces.containsKey(adjacent)) value -= 4;
-            adjacent.y = p.y;
-
-            adjacent.z = p.z - 1;
-            if (blockFaces.containsKey(adjacent)) value -= 2;
-            adjacent.z = p.z + 1;
-            if (blockFaces.containsKey(adjacent)) value -= 1;
-            entry.setValue(value);
-        }
-    }
 }
@@ -1,23 +1,37 @@
 package com.knkevin.model_tools.models;
 
+import com.knkevin.model_tools.Config;
+import com.knkevin.model_tools.models.parsers.ByteTokenizer;
+import com.knkevin.model_tools.models.parsers.ObjParser;
+import com.knkevin.model_tools.models.utils.LoadProgress;
+import com.knkevin.model_tools.models.utils.Mesh;
+import com.knkevin.model_tools.models.utils.ModelCache;
 import com.knkevin.model_tools.models.utils.Palette;
-import com.knkevin.model_tools.models.utils.Point;
-import com.knkevin.model_tools.models.utils.Triangle;
+import com.knkevin.model_tools.models.utils.Texture;
+import com.knkevin.model_tools.models.utils.TextureCache;
 import com.knkevin.model_tools.models.utils.VectorColors;
+import com.knkevin.model_tools.models.voxels.VoxelBuffer;
+import com.knkevin.model_tools.models.voxels.Voxelizer;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.block.state.BlockState;
-import org.joml.Vector3f;
 import org.joml.Vector4i;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Represents a 3D Model created from an obj file.
  */
 public class ObjModel extends Model {
+    private static final byte[] NEW_MATERIAL = "newmtl".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXTURE_MAP = "map_Kd".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DIFFUSE_COLOR = "Kd".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * The default material for missing or unassigned textures.
      */
@@ -29,37 +43,9 @@ public class ObjModel extends Model {
     public static final int DEFAULT_COLOR = (255 << 24) | (128 << 16) | (128 << 8) | 128;
 
     /**
-     * @param file A file to the texture to be opened.
-     * @return A BufferedImage representing the texture if opened successfully, null otherwise.
-     */
-    private static BufferedImage openTexture(File file) {
-        try {
-            return ImageIO.read(file);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    /**
-     * @param img A BufferedImage representing a texture.
-     * @param x A number 0-1 representing the horizontal position in the texture.
-     * @param y A number 0-1 representing the vertical position in the texture.
-     * @return The color at the location in the texture as an integer, 0 if the texture is null.
+     * A Map that maps material names to material ids.
      */
-    private static int getColor(BufferedImage img, float x, float y) {
-        if (img == null) return DEFAULT_COLOR;
-        y = 1 - y;
-        int tx = (int) (x * img.getWidth()) - 1;
-        tx = (tx % img.getWidth() + img.getWidth()) % img.getWidth();
-        int ty = (int) (y * img.getHeight()) - 1;
-        ty = (ty % img.getHeight() + img.getHeight()) % img.getHeight();
-        return img.getRGB(tx,ty);
-    }
-
-    /**
-     * A Map that maps material names to a list of Faces that use that material.
-     */
-    private final HashMap<String, List<Face>> materialFaceMap = new HashMap<>();
+    private final HashMap<String, Integer> materialIds = new HashMap<>();
 
     /**
      * A Map that maps material names to Files to texture images.
@@ -72,32 +58,51 @@ public class ObjModel extends Model {
     private final HashMap<String, Integer> materialColorMap = new HashMap<>();
 
     /**
-     * A list of float arrays that represent xyz coordinates of a vertex.
+     * The names of materials, indexed by material id.
      */
-    private final List<float[]> positionVertices = new ArrayList<>();
+    private final List<String> materialNames = new ArrayList<>();
 
     /**
-     * A list of float arrays that represent uv coordinates of a vertex.
+     * The name of the current material in the mtl file.
      */
-    private final List<float[]> textureVertices = new ArrayList<>();
+    private String currentMaterial;
 
     /**
-     * The name of the current material in the mtl or obj file.
+     * @param file A file to the obj file.
+     * @throws IOException The file could not be opened.
      */
-    private String currentMaterial;
+    public ObjModel(File file) throws IOException {
+        this(file, null);
+    }
 
     /**
      * @param file A file to the obj file.
+     * @param progress Receives the progress of reading and voxelizing the file, and may cancel it. May be null.
      * @throws IOException The file could not be opened.
+     * @throws java.util.concurrent.CancellationException The load was cancelled through the progress.
      */
-    public ObjModel(File file) throws IOException {
-        readMtl(file);
-        currentMaterial = DEFAULT_MATERIAL;
-        materialFaceMap.put(currentMaterial, new ArrayList<>());
-        readObj(file);
-        setScale(0);
+    public ObjModel(File file, LoadProgress progress) throws IOException {
+        materialIds.put(DEFAULT_MATERIAL, 0);
+        materialNames.add(DEFAULT_MATERIAL);
+        File mtlFile = getMtlFile(file);
+        ModelCache.Entry cached = ModelCache.read(file, mtlFile);
+        if (cached != null) {
+            readMaterials(cached.extra());
+            setMesh(cached.mesh());
+            if (progress != null) {
+                progress.addBytes(file.length());
+                progress.addFaces(mesh.faceCount());
+            }
+        } else {
+            readMtl(mtlFile);
+            readObj(file, progress);
+            //Cache the mesh before it is centered, so the cache only depends on the source files.
+            ModelCache.write(file, mesh, writeMaterials(), mtlFile);
+        }
+        //Set directly, since onTransformChanged would queue preview work before this Model is published.
+        scale.set(0);
         centerModel();
-        updateBlockFaces();
+        updateBlockFaces(progress);
     }
 
     /**
@@ -105,77 +110,104 @@ public class ObjModel extends Model {
      */
     public Map<BlockPos, BlockState> getBlocks() {
         Map<BlockPos, BlockState> blocks = new HashMap<>();
-        for (String material: materialFaceMap.keySet()) {
-            BufferedImage texture = ObjModel.openTexture(materialFileMap.get(material));
-            int color = materialColorMap.getOrDefault(material, DEFAULT_COLOR);
-            for (Face face: materialFaceMap.get(material)) {
-                for (Point p: face.getBlockPoints()) {
-                    if (texture != null) color = ObjModel.getColor(texture, p.tx, p.ty);
-                    BlockState blockState = Palette.getNearestBlock(color);
-                    blocks.put(p.blockPos(),blockState);
-                }
-            }
-        }
+        Texture[] textures = new Texture[materialNames.size()];
+        int[] colors = new int[materialNames.size()];
+        long textureBudget = Config.TEXTURE_CACHE_SIZE.get() * (1L << 20);
+        boolean bilinear = Config.BILINEAR_TEXTURES.get();
+        IntStream.range(0, materialNames.size()).parallel().forEach(material -> {
+            String name = materialNames.get(material);
+            textures[material] = TextureCache.get(materialFileMap.get(name), textureBudget);
+            colors[material] = materialColorMap.getOrDefault(name, DEFAULT_COLOR);
+        });
+        VoxelBuffer voxels = Voxelizer.voxelize(this.mesh, this.getTransformationMatrix(), true, null);
+        //Where faces overlap, the voxel from the lowest face wins, so the colors do not depend on thread scheduling.
+        int[] winners = voxels.firstOccurrences();
+        BlockState[] states = new BlockState[winners.length];
+        IntStream.range(0, winners.length).parallel().forEach(i -> {
+            int voxel = winners[i], material = mesh.getMaterial(voxels.getFace(voxel));
+            Texture texture = textures[material];
+            float u = voxels.getU(voxel), v = voxels.getV(voxel);
+            int color = texture == null ? colors[material] : bilinear ? texture.sampleBilinear(u, v) : texture.sample(u, v);
+            states[i] = Palette.getNearestBlock(color);
+        });
+        for (int i = 0; i < winners.length; ++i)
+            blocks.put(new BlockPos(voxels.getX(winners[i]), voxels.getY(winners[i]), voxels.getZ(winners[i])), states[i]);
         return blocks;
     }
 
     /**
-     * @see Model#centerModel()
+     * @param file A file to the obj file.
+     * @return A file to the mtl file with the same name as the obj file.
+     */
+    private static File getMtlFile(File file) {
+        String objName = file.getName();
+        return new File("models/" + objName.substring(0, objName.length() - 4) + ".mtl");
+    }
+
+    /**
+     * Serializes the materials of this Model, so they can be cached along with its Mesh.
+     * @return The material names, texture paths, and colors in material id order.
+     * @throws IOException The materials could not be serialized.
      */
-    protected void centerModel() {
-        Vector3f center = maxCorner.sub(minCorner, new Vector3f()).div(2);
-        for (float[] xyz: positionVertices) {
-            xyz[0] -= minCorner.x + center.x;
-            xyz[1] -= minCorner.y + center.y;
-            xyz[2] -= minCorner.z + center.z;
+    private byte[] writeMaterials() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(materialNames.size());
+            for (String name: materialNames) {
+                File texture = materialFileMap.get(name);
+                Integer color = materialColorMap.get(name);
+                out.writeUTF(name);
+                out.writeUTF(texture == null ? "" : texture.getPath());
+                out.writeBoolean(color != null);
+                out.writeInt(color == null ? 0 : color);
+            }
         }
-        center.mul(-1, minCorner);
-        center.mul(1, maxCorner);
+        return bytes.toByteArray();
     }
 
     /**
-     * @see Model#updateBlockFaces()
+     * Restores the materials of this Model from the output of writeMaterials.
+     * @param data The serialized materials.
+     * @throws IOException The data is malformed.
      */
-    protected void updateBlockFaces() {
-        blockFaces.clear();
-        for (String material: materialFaceMap.keySet()) {
-            for (Face face: materialFaceMap.get(material)) {
-                for (Point p: face.getBlockPoints()) {
-                    blockFaces.put(p, (byte) 63);
-                }
+    private void readMaterials(byte[] data) throws IOException {
+        materialIds.clear();
+        materialNames.clear();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int count = in.readInt();
+            for (int material = 0; material < count; ++material) {
+                String name = in.readUTF(), texture = in.readUTF();
+                boolean hasColor = in.readBoolean();
+                int color = in.readInt();
+                materialIds.put(name, material);
+                materialNames.add(name);
+                if (!texture.isEmpty()) materialFileMap.put(name, new File(texture));
+                if (hasColor) materialColorMap.put(name, color);
             }
         }
-        cullAdjacentFaces();
     }
 
     /**
      * Reads and parses the mtl file line by line.
-     * @param file A file to the mtl file.
+     * @param mtlFile A file to the mtl file. It does not need to exist.
      * @throws IOException The file could not be opened or read.
      */
-    private void readMtl(File file) throws IOException {
-        String objName = file.getName();
-        String mtlName = "models/" + objName.substring(0, objName.length() - 4) + ".mtl";
-        FileReader fileReader;
-        try {fileReader = new FileReader(mtlName);}
-        catch (FileNotFoundException e) {return;}
-        BufferedReader bufferedReader = new BufferedReader(fileReader);
-        while (bufferedReader.ready()) {
-            readMtlLine(bufferedReader.readLine().strip().replaceAll(" +", " ").split(" ", 2));
-        }
+    private void readMtl(File mtlFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(mtlFile.toPath(), StandardOpenOption.READ)) {
+            ByteTokenizer tokenizer = new ByteTokenizer(channel);
+            while (tokenizer.nextLine()) readMtlLine(tokenizer);
+        } catch (NoSuchFileException ignored) {}
     }
 
     /**
-     * Reads the first string in the array and calls the appropriate method to parse the array of strings.
-     * @param line An array of strings representing a line from the mtl file.
+     * Reads the command at the start of the line and calls the appropriate method to parse the rest of the line.
+     * @param tokenizer A tokenizer positioned at the start of a line from the mtl file.
      */
-    private void readMtlLine(String[] line) {
+    private void readMtlLine(ByteTokenizer tokenizer) {
         try {
-            switch (line[0]) {
-                case "newmtl" -> readNewMtl(line);
-                case "map_Kd" -> readMapKd(line);
-                case "Kd" -> readKd(line);
-            }
+            if (tokenizer.nextTokenIs(NEW_MATERIAL)) readNewMtl(tokenizer);
+            else if (tokenizer.nextTokenIs(TEXTURE_MAP)) readMapKd(tokenizer);
+            else if (tokenizer.nextTokenIs(DIFFUSE_COLOR)) readKd(tokenizer);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -183,190 +215,57 @@ public class ObjModel extends Model {
     }
 
     /**
-     * Parses the array of strings and sets currentMaterial to the material referenced by the command. Adds a new List to materialFaceMap for this material.
-     * @param line An array of strings representing a newmtl command.
+     * Parses a newmtl command and sets currentMaterial to the material referenced by the command. Assigns a new material id to this material.
+     * @param tokenizer A tokenizer positioned after a newmtl command.
      */
-    private void readNewMtl(String[] line) {
-        currentMaterial = line[1];
-        materialFaceMap.put(currentMaterial, new ArrayList<>());
+    private void readNewMtl(ByteTokenizer tokenizer) {
+        currentMaterial = tokenizer.readRest();
+        if (materialIds.putIfAbsent(currentMaterial, materialNames.size()) == null)
+            materialNames.add(currentMaterial);
     }
 
     /**
-     * Parses the array of strings and adds a File to materialFileMap
-     * @param line An array of strings representing a map_kd command.
+     * Parses a map_Kd command and adds a File to materialFileMap
+     * @param tokenizer A tokenizer positioned after a map_Kd command.
      */
-    private void readMapKd(String[] line) {
-        File texturePath = new File("models/" + line[1]);
+    private void readMapKd(ByteTokenizer tokenizer) {
+        String path = tokenizer.readRest();
+        File texturePath = new File("models/" + path);
         if (texturePath.isFile())
             materialFileMap.put(currentMaterial, texturePath);
-        texturePath = new File(line[1]);
+        texturePath = new File(path);
         if (texturePath.isFile())
             materialFileMap.put(currentMaterial, texturePath);
     }
 
     /**
-     * Parses the array of strings and adds
-     * @param line An array of strings representing a Kd command.
+     * Parses a Kd command and adds the color to materialColorMap.
+     * @param tokenizer A tokenizer positioned after a Kd command.
      */
-    private void readKd(String[] line) {
-        String[] colors = line[1].split(" ");
-        int red = (int) (Float.parseFloat(colors[0]) * 255), green = (int) (Float.parseFloat(colors[1]) * 255), blue = (int) (Float.parseFloat(colors[2]) * 255);
+    private void readKd(ByteTokenizer tokenizer) {
+        int red = (int) (tokenizer.readFloat() * 255), green = (int) (tokenizer.readFloat() * 255), blue = (int) (tokenizer.readFloat() * 255);
         int color = VectorColors.ARGBToInt(new Vector4i(255, red, green, blue));
         materialColorMap.put(currentMaterial, color);
     }
 
     /**
-     * Reads and parses the obj file line by line.
+     * Parses the obj file, in parallel if it is large, into the Mesh of this Model.
      * @param file A file to the obj file.
+     * @param progress Receives the number of bytes read and faces parsed. May be null.
      * @throws IOException The file could not be opened or read.
      */
-    private void readObj(File file) throws IOException {
-        FileReader fileReader = new FileReader(file);
-        BufferedReader bufferedReader = new BufferedReader(fileReader);
-        while (bufferedReader.ready()) {
-            readObjLine(bufferedReader.readLine().strip().replaceAll(" +", " ").split(" "));
-        }
-    }
-
-    /**
-     * Reads the first string in the array and calls the appropriate method to parse the array of strings.
-     * @param line An array of strings representing a line from the obj file.
-     */
-    private void readObjLine(String[] line) {
-        try {
-            switch (line[0]) {
-                case "v" -> readVertex(line);
-                case "vt" -> readTextureVertex(line);
-                case "usemtl" -> readUseMaterial(line);
-                case "f" -> readFace(line);
-            }
-        }
-        catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Parses the array of strings and adds the position vertex as a float array to this model's list of position vertices.
-     * @param line An array of strings representing a vertex command.
-     */
-    private void readVertex(String[] line) {
-        float x = Float.parseFloat(line[1]), y = Float.parseFloat(line[2]), z = Float.parseFloat(line[3]);
-        positionVertices.add(new float[]{x, y, z});
-        Vector3f temp = new Vector3f(x, y, z);
-        minCorner.min(temp);
-        maxCorner.max(temp);
-    }
-
-    /**
-     * Parses the array of strings and adds the texture vertex as a float array to this model's list of texture vertices.
-     * @param line An array of strings representing a texture vertex command.
-     */
-    private void readTextureVertex(String[] line) {
-        textureVertices.add(new float[]{Float.parseFloat(line[1]), Float.parseFloat(line[2])});
-    }
-
-    /**
-     * Parses the array of strings and sets the current material if the material was defined in the mtl file.
-     * @param line An array of strings representing a usemtl command.
-     */
-    private void readUseMaterial(String[] line) {
-        currentMaterial = DEFAULT_MATERIAL;
-        if (line.length > 1 && materialFaceMap.containsKey(line[1]))
-            currentMaterial = line[1];
-    }
-
-    /**
-     * Parses the array of strings and adds the face to the corresponding list of Faces based on the current material.
-     * @param line An array of strings representing a face command.
-     */
-    private void readFace(String[] line) {
-        materialFaceMap.get(currentMaterial).add(new Face(line));
-    }
-
-    /**
-     * Represents a face in an obj model.
-     */
-    private class Face {
-        /**
-         * An array of indices corresponding to vertices in the obj model.
-         */
-        private final int[] vertexIndices;
-
-        /**
-         * An array of indices corresponding to texture vertices in the obj model.
-         */
-        private final int[] textureIndices;
-
-        /**
-         * The number of vertices that make up the Face.
-         */
-        private final int numVertices;
-
-        /**
-         * True if there are indices to texture vertices, false otherwise.
-         */
-        private final boolean textured;
-
-        /**
-         * @param line An array of strings containing face data.
-         */
-        private Face(String[] line) {
-            numVertices = line.length - 1;
-            vertexIndices = new int[numVertices];
-            textureIndices = new int[numVertices];
-            for (int i = 1; i < line.length; ++i) {
-                String[] numbers = line[i].split("/");
-                int vertexIndex = Integer.parseInt(numbers[0]);
-                vertexIndex = vertexIndex < 0 ? positionVertices.size() + vertexIndex : vertexIndex - 1;
-                vertexIndices[i-1] = vertexIndex;
-                if (numbers.length >= 2 && !numbers[1].isEmpty()) {
-                    int textureIndex = Integer.parseInt(numbers[1]);
-                    textureIndex = textureIndex < 0 ? textureVertices.size() + textureIndex : textureIndex - 1;
-                    textureIndices[i-1] = textureIndex;
-                }
-            }
-            textured = textureIndices[0] != 0;
-        }
-
-        /**
-         * @return A list of Points representing the vertices that make up this Face.
-         */
-        private List<Point> getVertices() {
-            List<Point> vertices = new ArrayList<>();
-            for (int i = 0; i < numVertices; ++i) {
-                float[] xyz = positionVertices.get(vertexIndices[i]);
-                float[] uv = new float[2];
-                if (textured)
-                    uv = textureVertices.get(textureIndices[i]);
-                vertices.add(new Point(xyz, uv).transformed(ObjModel.this.getTransformationMatrix()));
-            }
-            return vertices;
-        }
-
-        /**
-         * @return A list of Triangles that make up this Face.
-         */
-        private List<Triangle> getTriangles() {
-            List<Triangle> triangles = new ArrayList<>();
-            List<Point> vertices = getVertices();
-            Point p1 = vertices.get(0);
-            for (int i = 1; i < numVertices-1; ++i) {
-                Point p2 = vertices.get(i);
-                Point p3 = vertices.get(i+1);
-                triangles.add(new Triangle(p1, p2, p3));
-            }
-            return triangles;
-        }
-
-        /**
-         * @return A set of points inside the polygon described by this Face using integer coordinates.
-         */
-        private Set<Point> getBlockPoints() {
-            Set<Point> blockPoints = new HashSet<>();
-            for (Triangle triangle: getTriangles())
-                blockPoints.addAll(triangle.getBlockPoints());
-            return blockPoints;
+    private void readObj(File file, LoadProgress progress) throws IOException {
+        ObjParser parser;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            parser = ObjParser.parse(channel, materialIds, 0, progress);
         }
+        setMesh(new Mesh(
+                parser.positions.toArray(),
+                parser.textureCoordinates.toArray(),
+                parser.faceStarts.toArray(),
+                parser.vertexIndices.toArray(),
+                parser.textureIndices.toArray(),
+                parser.faceMaterials.toArray()
+        ));
     }
 }
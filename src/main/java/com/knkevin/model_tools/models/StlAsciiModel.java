@@ -1,40 +1,73 @@
 package com.knkevin.model_tools.models;
 
-import com.knkevin.model_tools.models.utils.Point;
-import com.knkevin.model_tools.models.utils.Triangle;
+import com.knkevin.model_tools.models.parsers.ByteTokenizer;
+import com.knkevin.model_tools.models.utils.FloatList;
+import com.knkevin.model_tools.models.utils.LoadProgress;
+import com.knkevin.model_tools.models.utils.Mesh;
+import com.knkevin.model_tools.models.utils.ModelCache;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * Represents a 3D Model created from an ascii stl file.
  */
 public class StlAsciiModel extends StlModel {
+    private static final byte[] VERTEX = "vertex".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * @param file A File to the stl file.
      * @throws IOException The file could not be opened.
      */
     public StlAsciiModel(File file) throws IOException {
-        FileReader fileReader = new FileReader(file);
-        BufferedReader bufferedReader = new BufferedReader(fileReader);
-        while (bufferedReader.ready()) {
-            String[] line = bufferedReader.readLine().strip().replaceAll(" +", " ").split(" ");
-            if (line[0].equals("facet")) {
-                bufferedReader.readLine();
-                String[] p1 = bufferedReader.readLine().strip().replaceAll(" +", " ").split(" ");
-                String[] p2 = bufferedReader.readLine().strip().replaceAll(" +", " ").split(" ");
-                String[] p3 = bufferedReader.readLine().strip().replaceAll(" +", " ").split(" ");
-                this.addTriangle(new Triangle(
-                        new Point(Float.parseFloat(p1[1]), Float.parseFloat(p1[3]), Float.parseFloat(p1[2])),
-                        new Point(Float.parseFloat(p2[1]), Float.parseFloat(p2[3]), Float.parseFloat(p2[2])),
-                        new Point(Float.parseFloat(p3[1]), Float.parseFloat(p3[3]), Float.parseFloat(p3[2]))
-                ));
-            }
+        this(file, null);
+    }
+
+    /**
+     * @param file A File to the stl file.
+     * @param progress Receives the progress of reading and voxelizing the file, and may cancel it. May be null.
+     * @throws IOException The file could not be opened.
+     * @throws java.util.concurrent.CancellationException The load was cancelled through the progress.
+     */
+    public StlAsciiModel(File file, LoadProgress progress) throws IOException {
+        ModelCache.Entry cached = ModelCache.read(file);
+        if (cached != null && progress != null) {
+            progress.addBytes(file.length());
+            progress.addFaces(cached.mesh().faceCount());
         }
+        this.setMesh(cached != null ? cached.mesh() : readMesh(file, progress));
         this.centerModel();
-        this.setScale(0);
-        this.updateBlockFaces();
+        this.scale.set(0);
+        this.updateBlockFaces(progress);
+    }
+
+    /**
+     * Parses the vertices of every facet in the stl file and caches the resulting Mesh.
+     * @param file A File to the stl file.
+     * @param progress Receives the number of bytes read and faces parsed. May be null.
+     * @return The Mesh of the stl file.
+     * @throws IOException The file could not be opened.
+     */
+    private static Mesh readMesh(File file, LoadProgress progress) throws IOException {
+        FloatList vertices = new FloatList(1 << 12);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteTokenizer tokenizer = new ByteTokenizer(channel, progress);
+            while (tokenizer.nextLine()) {
+                if (!tokenizer.nextTokenIs(VERTEX)) continue;
+                float x = tokenizer.readFloat(), y = tokenizer.readFloat(), z = tokenizer.readFloat();
+                vertices.add(x, z, y);
+                if (progress != null && vertices.size() % (9 * LoadProgress.BATCH_SIZE) == 0) progress.addFaces(LoadProgress.BATCH_SIZE);
+            }
+        }
+        //Drop the vertices of an incomplete final facet.
+        float[] corners = vertices.toArray();
+        if (corners.length % 9 != 0) corners = Arrays.copyOf(corners, corners.length - corners.length % 9);
+        Mesh mesh = Mesh.fromTriangles(corners);
+        ModelCache.write(file, mesh, new byte[0]);
+        return mesh;
     }
 }
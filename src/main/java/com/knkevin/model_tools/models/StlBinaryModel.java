@@ -1,40 +1,150 @@
 package com.knkevin.model_tools.models;
 
-import com.knkevin.model_tools.models.utils.Point;
-import com.knkevin.model_tools.models.utils.Triangle;
+import com.knkevin.model_tools.models.utils.LoadProgress;
+import com.knkevin.model_tools.models.utils.Mesh;
+import com.knkevin.model_tools.models.utils.ModelCache;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Represents a 3D Model created from a binary stl file.
  */
 public class StlBinaryModel extends StlModel {
+    /**
+     * The size in bytes of the header, including the triangle count.
+     */
+    private static final int HEADER_SIZE = 84;
+
+    /**
+     * The size in bytes of a single triangle record: a normal, three vertices, and an attribute count.
+     */
+    private static final int RECORD_SIZE = 50;
+
+    /**
+     * The maximum number of triangle records mapped into memory at once.
+     */
+    private static final int RECORDS_PER_WINDOW = Integer.MAX_VALUE / RECORD_SIZE;
+
     /**
      * @param file A file to the stl file.
-     * @throws IOException The file could not be opened.
+     * @throws IOException The file could not be opened, or its length does not match its triangle count.
      */
     public StlBinaryModel(File file) throws IOException {
-        FileInputStream stream = new FileInputStream(file);
-        stream.readNBytes(80);
-        int num_triangles = stream.read() + stream.read() * 256 + stream.read() * 65536 + stream.read() * 16777216;
-        for (int i = 0; i < num_triangles; ++i) {
-            stream.readNBytes(12);
-            float[] coordinates = new float[9];
-            for (int j = 0; j < 9; ++j)
-                coordinates[j] = ByteBuffer.wrap(stream.readNBytes(4)).order(ByteOrder.LITTLE_ENDIAN).getFloat();
-            this.addTriangle(new Triangle(
-                    new Point(coordinates[0], coordinates[2], coordinates[1]),
-                    new Point(coordinates[3], coordinates[5], coordinates[4]),
-                    new Point(coordinates[6], coordinates[8], coordinates[7])
-            ));
-            stream.readNBytes(2);
+        this(file, null);
+    }
+
+    /**
+     * @param file A file to the stl file.
+     * @param progress Receives the progress of reading and voxelizing the file, and may cancel it. May be null.
+     * @throws IOException The file could not be opened, or its length does not match its triangle count.
+     * @throws java.util.concurrent.CancellationException The load was cancelled through the progress.
+     */
+    public StlBinaryModel(File file, LoadProgress progress) throws IOException {
+        ModelCache.Entry cached = ModelCache.read(file);
+        if (cached != null && progress != null) {
+            progress.addBytes(file.length());
+            progress.addFaces(cached.mesh().faceCount());
         }
+        this.setMesh(cached != null ? cached.mesh() : readMesh(file, progress));
         this.centerModel();
-        this.setScale(0);
-        this.updateBlockFaces();
+        this.scale.set(0);
+        this.updateBlockFaces(progress);
+    }
+
+    /**
+     * Decodes every triangle in the stl file and caches the resulting Mesh.
+     * @param file A file to the stl file.
+     * @param progress Receives the number of bytes read and faces parsed. May be null.
+     * @return The Mesh of the stl file.
+     * @throws IOException The file could not be opened, or its length does not match its triangle count.
+     */
+    private static Mesh readMesh(File file, LoadProgress progress) throws IOException {
+        Mesh mesh;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int numTriangles = readTriangleCount(channel);
+            float[] vertices = new float[Math.multiplyExact(numTriangles, 9)];
+            for (int first = 0; first < numTriangles; first += RECORDS_PER_WINDOW) {
+                int count = Math.min(RECORDS_PER_WINDOW, numTriangles - first);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long) first * RECORD_SIZE, (long) count * RECORD_SIZE);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                //Decode in batches so progress can be reported and the load cancelled.
+                for (int done = 0; done < count; done += LoadProgress.BATCH_SIZE) {
+                    int batch = Math.min(LoadProgress.BATCH_SIZE, count - done);
+                    decodeTriangles(buffer, done, batch, vertices, (first + done) * 9);
+                    if (progress != null) {
+                        progress.addBytes((long) batch * RECORD_SIZE);
+                        progress.addFaces(batch);
+                    }
+                }
+            }
+            mesh = Mesh.fromTriangles(vertices);
+        }
+        ModelCache.write(file, mesh, new byte[0]);
+        return mesh;
+    }
+
+    /**
+     * @param file A file to an stl file.
+     * @return True if the length of the file matches the triangle count in its header, false otherwise.
+     * @throws IOException The file could not be opened.
+     */
+    public static boolean hasValidLength(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            readTriangleCount(channel);
+            return true;
+        } catch (InvalidStlException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the triangle count from the header and checks it against the length of the file.
+     * @param channel A channel to the stl file.
+     * @return The number of triangles in the file.
+     * @throws IOException The file could not be read, or its length does not match its triangle count.
+     */
+    private static int readTriangleCount(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) throw new InvalidStlException("File is too small to be a binary stl: " + size + " bytes.");
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        long numTriangles = Integer.toUnsignedLong(header.order(ByteOrder.LITTLE_ENDIAN).getInt(HEADER_SIZE - 4));
+        long expectedSize = HEADER_SIZE + numTriangles * RECORD_SIZE;
+        if (expectedSize != size)
+            throw new InvalidStlException("Header declares " + numTriangles + " triangles (" + expectedSize + " bytes) but the file is " + size + " bytes.");
+        if (numTriangles > Integer.MAX_VALUE / 9) throw new InvalidStlException("Too many triangles: " + numTriangles + ".");
+        return (int) numTriangles;
+    }
+
+    /**
+     * Decodes the vertices of triangle records directly into a flat array, swapping the y and z axes.
+     * @param buffer A little-endian buffer starting at a triangle record.
+     * @param start The index of the first triangle record to decode within the buffer.
+     * @param count The number of triangle records to decode.
+     * @param vertices The array to write the xyz coordinates of each vertex into.
+     * @param offset The index in the array to start writing at.
+     */
+    private static void decodeTriangles(MappedByteBuffer buffer, int start, int count, float[] vertices, int offset) {
+        //Skip the 12 byte normal at the start of each record.
+        for (int i = 0, pos = start * RECORD_SIZE + 12; i < count; ++i, pos += RECORD_SIZE) {
+            for (int v = 0; v < 36; v += 12) {
+                vertices[offset++] = buffer.getFloat(pos + v);
+                vertices[offset++] = buffer.getFloat(pos + v + 8);
+                vertices[offset++] = buffer.getFloat(pos + v + 4);
+            }
+        }
+    }
+
+    /**
+     * Thrown when a file does not have the layout of a binary stl file.
+     */
+    private static class InvalidStlException extends IOException {
+        private InvalidStlException(String message) {
+            super(message);
+        }
     }
 }
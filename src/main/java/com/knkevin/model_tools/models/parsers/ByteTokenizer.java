@@ -0,0 +1,354 @@
+package com.knkevin.model_tools.models.parsers;
+
+import com.knkevin.model_tools.models.utils.LoadProgress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a range of a text file into lines and whitespace separated tokens by scanning raw bytes.
+ * Numbers are parsed in place, so reading vertices and faces does not allocate any Strings.
+ */
+public class ByteTokenizer {
+    /**
+     * Exact powers of ten as floats.
+     */
+    private static final float[] FLOAT_POWERS = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    /**
+     * Exact powers of ten as doubles.
+     */
+    private static final double[] DOUBLE_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The channel being read from.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The position in the file of the next byte to be read into the buffer, and the position to stop reading at.
+     */
+    private long filePosition, fileEnd;
+
+    /**
+     * Bytes read from the channel.
+     */
+    private byte[] bytes;
+
+    /**
+     * The current position in bytes, the end of the current line, and the number of valid bytes.
+     */
+    private int position, lineEnd, limit;
+
+    /**
+     * The number of bytes of the file that have been consumed before the start of the buffer.
+     */
+    private long consumed;
+
+    /**
+     * Receives the number of bytes read each time the buffer is filled. May be null.
+     */
+    private final LoadProgress progress;
+
+    /**
+     * @param channel A channel to the file to tokenize.
+     * @param start The position in the file to start reading at. Should be the start of a line.
+     * @param end The position in the file to stop reading at. Should be the start of a line or the end of the file.
+     * @param progress Receives the number of bytes read. May be null.
+     */
+    public ByteTokenizer(FileChannel channel, long start, long end, LoadProgress progress) {
+        this.channel = channel;
+        this.filePosition = start;
+        this.fileEnd = end;
+        this.progress = progress;
+        this.bytes = new byte[1 << 16];
+    }
+
+    /**
+     * @param channel A channel to the file to tokenize.
+     * @param start The position in the file to start reading at. Should be the start of a line.
+     * @param end The position in the file to stop reading at. Should be the start of a line or the end of the file.
+     */
+    public ByteTokenizer(FileChannel channel, long start, long end) {
+        this(channel, start, end, null);
+    }
+
+    /**
+     * @param channel A channel to the file to tokenize.
+     * @param progress Receives the number of bytes read. May be null.
+     * @throws IOException The size of the file could not be read.
+     */
+    public ByteTokenizer(FileChannel channel, LoadProgress progress) throws IOException {
+        this(channel, 0, channel.size(), progress);
+    }
+
+    /**
+     * @param channel A channel to the file to tokenize.
+     * @throws IOException The size of the file could not be read.
+     */
+    public ByteTokenizer(FileChannel channel) throws IOException {
+        this(channel, 0, channel.size(), null);
+    }
+
+    /**
+     * @return The number of bytes of the range that have been consumed so far.
+     */
+    public long bytesRead() {
+        return consumed + position;
+    }
+
+    /**
+     * Moves to the first token of the next line that is not empty.
+     * The whole line is guaranteed to be in the buffer afterwards.
+     * @return True if there was another line, false if the end of the range was reached.
+     * @throws IOException The file could not be read.
+     * @throws java.util.concurrent.CancellationException The load reporting progress was cancelled.
+     */
+    public boolean nextLine() throws IOException {
+        position = Math.min(lineEnd + 1, Math.max(limit, lineEnd));
+        while (true) {
+            int end = indexOfNewline(position);
+            if (end < 0) {
+                if (!fill()) {
+                    if (position >= limit) return false;
+                    end = limit;
+                } else continue;
+            }
+            lineEnd = end;
+            skipWhitespace();
+            if (position < lineEnd) return true;
+            position = Math.min(lineEnd + 1, limit);
+        }
+    }
+
+    /**
+     * @return True if there is another token on the current line, false otherwise.
+     */
+    public boolean hasToken() {
+        skipWhitespace();
+        return position < lineEnd;
+    }
+
+    /**
+     * Consumes the next token if it matches the given word exactly.
+     * @param word The ascii bytes of the word to match.
+     * @return True if the token matched and was consumed, false otherwise.
+     */
+    public boolean nextTokenIs(byte[] word) {
+        skipWhitespace();
+        int end = position + word.length;
+        if (end > lineEnd || (end < lineEnd && !isWhitespace(bytes[end]))) return false;
+        for (int i = 0; i < word.length; ++i)
+            if (bytes[position + i] != word[i]) return false;
+        position = end;
+        return true;
+    }
+
+    /**
+     * Consumes the next byte if it matches the given character.
+     * @param c The character to match.
+     * @return True if the next byte matched and was consumed, false otherwise.
+     */
+    public boolean accept(char c) {
+        if (position < lineEnd && bytes[position] == c) {
+            ++position;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param c The character to match.
+     * @return True if the next byte matches the given character, false otherwise.
+     */
+    public boolean peek(char c) {
+        return position < lineEnd && bytes[position] == c;
+    }
+
+    /**
+     * @return The next token on the current line.
+     */
+    public String readToken() {
+        skipWhitespace();
+        int start = position;
+        while (position < lineEnd && !isWhitespace(bytes[position])) ++position;
+        return new String(bytes, start, position - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The remainder of the current line without leading or trailing whitespace.
+     */
+    public String readRest() {
+        skipWhitespace();
+        int end = lineEnd;
+        while (end > position && isWhitespace(bytes[end - 1])) --end;
+        String rest = new String(bytes, position, end - position, StandardCharsets.UTF_8);
+        position = lineEnd;
+        return rest;
+    }
+
+    /**
+     * Parses the next token as a signed decimal integer.
+     * Stops at the first byte that is not a digit, so "12/5/3" reads as 12.
+     * @return The integer.
+     * @throws NumberFormatException The token does not start with an integer.
+     */
+    public int readInt() {
+        skipWhitespace();
+        boolean negative = accept('-');
+        if (!negative) accept('+');
+        int start = position;
+        long value = 0;
+        while (position < lineEnd) {
+            int digit = bytes[position] - '0';
+            if (digit < 0 || digit > 9) break;
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException("Integer out of range: " + tokenAt(start));
+            ++position;
+        }
+        if (position == start) throw new NumberFormatException("Expected an integer: " + tokenAt(start));
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Parses the next token as a float.
+     * Plain decimal and scientific notation are parsed in place. Anything else falls back to Float.parseFloat.
+     * Numbers with more than 7 significant digits are rounded through a double, which can differ from Float.parseFloat by one ulp in rare halfway cases.
+     * @return The float.
+     * @throws NumberFormatException The token is not a float.
+     */
+    public float readFloat() {
+        skipWhitespace();
+        int start = position;
+        boolean negative = accept('-');
+        if (!negative) accept('+');
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean any = false;
+        while (position < lineEnd) {
+            int digit = bytes[position] - '0';
+            if (digit < 0 || digit > 9) break;
+            any = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) ++digits;
+            } else ++exponent;
+            ++position;
+        }
+        if (accept('.')) {
+            while (position < lineEnd) {
+                int digit = bytes[position] - '0';
+                if (digit < 0 || digit > 9) break;
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) ++digits;
+                    --exponent;
+                }
+                ++position;
+            }
+        }
+        if (any && position < lineEnd && (bytes[position] == 'e' || bytes[position] == 'E')) {
+            ++position;
+            boolean negativeExponent = accept('-');
+            if (!negativeExponent) accept('+');
+            int exponentStart = position, e = 0;
+            while (position < lineEnd) {
+                int digit = bytes[position] - '0';
+                if (digit < 0 || digit > 9) break;
+                if (e < 10000) e = e * 10 + digit;
+                ++position;
+            }
+            if (position == exponentStart) return fallbackFloat(start);
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!any || (position < lineEnd && !isWhitespace(bytes[position]) && bytes[position] != '/')) return fallbackFloat(start);
+
+        float value;
+        if (mantissa == 0) value = 0;
+        else if (mantissa < (1 << 24) && exponent >= -10 && exponent <= 10)
+            value = exponent < 0 ? mantissa / FLOAT_POWERS[-exponent] : mantissa * FLOAT_POWERS[exponent];
+        else if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22)
+            value = (float) (exponent < 0 ? mantissa / DOUBLE_POWERS[-exponent] : mantissa * DOUBLE_POWERS[exponent]);
+        else return fallbackFloat(start);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the token starting at the given position with Float.parseFloat.
+     * @param start The position of the start of the token.
+     * @return The float.
+     * @throws NumberFormatException The token is not a float.
+     */
+    private float fallbackFloat(int start) {
+        position = start;
+        return Float.parseFloat(readToken());
+    }
+
+    /**
+     * @param start The position of the start of a token.
+     * @return The token for use in error messages.
+     */
+    private String tokenAt(int start) {
+        int end = start;
+        while (end < lineEnd && !isWhitespace(bytes[end])) ++end;
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Advances the position past spaces, tabs, and carriage returns on the current line.
+     */
+    private void skipWhitespace() {
+        while (position < lineEnd && isWhitespace(bytes[position])) ++position;
+    }
+
+    /**
+     * @param b A byte.
+     * @return True if the byte separates tokens, false otherwise.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+    }
+
+    /**
+     * @param from The position to start searching at.
+     * @return The position of the next newline in the buffer, or -1 if there is none.
+     */
+    private int indexOfNewline(int from) {
+        for (int i = from; i < limit; ++i)
+            if (bytes[i] == '\n') return i;
+        return -1;
+    }
+
+    /**
+     * Discards consumed bytes and reads more of the range into the buffer, growing it if a line does not fit.
+     * @return True if any bytes were read, false if the end of the range was reached.
+     * @throws IOException The file could not be read.
+     */
+    private boolean fill() throws IOException {
+        if (filePosition >= fileEnd) return false;
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            consumed += position;
+            limit -= position;
+            position = 0;
+        }
+        if (limit == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, limit, (int) Math.min(bytes.length - limit, fileEnd - filePosition));
+        int read = channel.read(buffer, filePosition);
+        if (read <= 0) {
+            fileEnd = filePosition;
+            return false;
+        }
+        filePosition += read;
+        limit += read;
+        if (progress != null) progress.addBytes(read);
+        return true;
+    }
+}
@@ -0,0 +1,378 @@
+package com.knkevin.model_tools.models.parsers;
+
+import com.knkevin.model_tools.models.utils.FloatList;
+import com.knkevin.model_tools.models.utils.IntList;
+import com.knkevin.model_tools.models.utils.LoadProgress;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses the vertices, texture vertices, and faces of an obj file into flat primitive lists.
+ * Large files can be split into newline-aligned ranges that are parsed in parallel and merged in file order.
+ */
+public class ObjParser {
+    private static final byte[] VERTEX = "v".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXTURE_VERTEX = "vt".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FACE = "f".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] USE_MATERIAL = "usemtl".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Files at least this many bytes long are parsed in parallel.
+     */
+    public static final long PARALLEL_THRESHOLD = 32L << 20;
+
+    /**
+     * Ranges are not split any further once they are smaller than this many bytes.
+     */
+    private static final long MIN_RANGE_SIZE = 8L << 20;
+
+    /**
+     * The material id of faces in a range that come before the range's first usemtl command.
+     * Resolved to the material that was active at the end of the previous range when ranges are merged.
+     */
+    private static final int INHERITED_MATERIAL = -1;
+
+    /**
+     * The xyz coordinates of each position vertex.
+     */
+    public final FloatList positions = new FloatList(1 << 12);
+
+    /**
+     * The uv coordinates of each texture vertex.
+     */
+    public final FloatList textureCoordinates = new FloatList(1 << 12);
+
+    /**
+     * The index into vertexIndices of the first corner of each face, followed by the total number of corners.
+     */
+    public final IntList faceStarts = new IntList(1 << 12);
+
+    /**
+     * The index of the position vertex of each face corner.
+     */
+    public final IntList vertexIndices = new IntList(1 << 12);
+
+    /**
+     * The index of the texture vertex of each face corner, or -1 if the corner has none.
+     */
+    public final IntList textureIndices = new IntList(1 << 12);
+
+    /**
+     * The material of each face.
+     */
+    public final IntList faceMaterials = new IntList(1 << 10);
+
+    /**
+     * Maps material names from the mtl file to material ids.
+     */
+    private final Map<String, Integer> materialIds;
+
+    /**
+     * The material id used for faces without a known material.
+     */
+    private final int defaultMaterial;
+
+    /**
+     * The material id of the current usemtl statement.
+     */
+    private int currentMaterial;
+
+    /**
+     * The corners in vertexIndices and textureIndices that were resolved from negative indices.
+     * Only tracked for ranges, where they are relative to the start of the range rather than the file.
+     */
+    private final IntList relativeVertexCorners, relativeTextureCorners;
+
+    /**
+     * @param materialIds Maps material names from the mtl file to material ids.
+     * @param defaultMaterial The material id used for faces without a known material.
+     */
+    public ObjParser(Map<String, Integer> materialIds, int defaultMaterial) {
+        this(materialIds, defaultMaterial, false);
+    }
+
+    /**
+     * @param materialIds Maps material names from the mtl file to material ids.
+     * @param defaultMaterial The material id used for faces without a known material.
+     * @param range True if this parser reads a range that does not start at the beginning of the file.
+     */
+    private ObjParser(Map<String, Integer> materialIds, int defaultMaterial, boolean range) {
+        this.materialIds = materialIds;
+        this.defaultMaterial = defaultMaterial;
+        this.currentMaterial = range ? INHERITED_MATERIAL : defaultMaterial;
+        this.relativeVertexCorners = range ? new IntList() : null;
+        this.relativeTextureCorners = range ? new IntList() : null;
+        this.faceStarts.add(0);
+    }
+
+    /**
+     * Parses the obj file, in parallel on the common fork/join pool if it is at least PARALLEL_THRESHOLD bytes long.
+     * @param channel A channel to the obj file.
+     * @param materialIds Maps material names from the mtl file to material ids.
+     * @param defaultMaterial The material id used for faces without a known material.
+     * @param progress Receives the number of bytes read and faces parsed. May be null.
+     * @return A parser holding the contents of the whole file.
+     * @throws IOException The file could not be read.
+     * @throws java.util.concurrent.CancellationException The load reporting progress was cancelled.
+     */
+    public static ObjParser parse(FileChannel channel, Map<String, Integer> materialIds, int defaultMaterial, LoadProgress progress) throws IOException {
+        long size = channel.size();
+        if (size < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            ObjParser parser = new ObjParser(materialIds, defaultMaterial);
+            parser.parse(new ByteTokenizer(channel, progress), progress);
+            return parser;
+        }
+        List<ObjParser> ranges;
+        try {
+            ranges = ForkJoinPool.commonPool().invoke(new RangeTask(channel, materialIds, defaultMaterial, progress, 0, size));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return merge(ranges, materialIds, defaultMaterial);
+    }
+
+    /**
+     * @return The number of faces parsed.
+     */
+    public int faceCount() {
+        return faceMaterials.size();
+    }
+
+    /**
+     * Reads and parses the obj file line by line.
+     * @param channel A channel to the obj file.
+     * @throws IOException The file could not be read.
+     */
+    public void parse(FileChannel channel) throws IOException {
+        parse(new ByteTokenizer(channel), null);
+    }
+
+    /**
+     * Reads and parses lines from the tokenizer until it runs out.
+     * @param tokenizer A tokenizer over the obj file or a range of it.
+     * @param progress Receives the number of faces parsed. May be null.
+     * @throws IOException The file could not be read.
+     */
+    private void parse(ByteTokenizer tokenizer, LoadProgress progress) throws IOException {
+        int reportedFaces = 0;
+        while (tokenizer.nextLine()) {
+            try {
+                if (tokenizer.nextTokenIs(VERTEX)) readVertex(tokenizer);
+                else if (tokenizer.nextTokenIs(TEXTURE_VERTEX)) readTextureVertex(tokenizer);
+                else if (tokenizer.nextTokenIs(FACE)) readFace(tokenizer);
+                else if (tokenizer.nextTokenIs(USE_MATERIAL)) readUseMaterial(tokenizer);
+            } catch (NumberFormatException e) {
+                discardPartialFace();
+                e.printStackTrace();
+            }
+            if (progress != null && faceCount() - reportedFaces >= LoadProgress.BATCH_SIZE) {
+                progress.addFaces(faceCount() - reportedFaces);
+                reportedFaces = faceCount();
+            }
+        }
+        if (progress != null) progress.addFaces(faceCount() - reportedFaces);
+    }
+
+    /**
+     * Parses a vertex command and adds the position vertex to the list of positions.
+     * @param tokenizer A tokenizer positioned after the command.
+     */
+    private void readVertex(ByteTokenizer tokenizer) {
+        float x = tokenizer.readFloat(), y = tokenizer.readFloat(), z = tokenizer.readFloat();
+        positions.add(x, y, z);
+    }
+
+    /**
+     * Parses a texture vertex command and adds the texture vertex to the list of texture coordinates.
+     * @param tokenizer A tokenizer positioned after the command.
+     */
+    private void readTextureVertex(ByteTokenizer tokenizer) {
+        float u = tokenizer.readFloat(), v = tokenizer.hasToken() ? tokenizer.readFloat() : 0;
+        textureCoordinates.add(u, v);
+    }
+
+    /**
+     * Parses a usemtl command and sets the current material if the material was defined in the mtl file.
+     * @param tokenizer A tokenizer positioned after the command.
+     */
+    private void readUseMaterial(ByteTokenizer tokenizer) {
+        currentMaterial = tokenizer.hasToken() ? materialIds.getOrDefault(tokenizer.readToken(), defaultMaterial) : defaultMaterial;
+    }
+
+    /**
+     * Parses a face command in any of the v, v/vt, v//vn, or v/vt/vn forms, resolving negative indices against the vertices read so far.
+     * @param tokenizer A tokenizer positioned after the command.
+     */
+    private void readFace(ByteTokenizer tokenizer) {
+        int numPositions = positions.size() / 3, numTextures = textureCoordinates.size() / 2;
+        int corners = 0;
+        while (tokenizer.hasToken()) {
+            int vertexIndex = tokenizer.readInt(), textureIndex = 0;
+            if (tokenizer.accept('/')) {
+                if (!tokenizer.peek('/')) textureIndex = tokenizer.readInt();
+                if (tokenizer.accept('/')) tokenizer.readInt();
+            }
+            if (relativeVertexCorners != null) {
+                if (vertexIndex < 0) relativeVertexCorners.add(vertexIndices.size());
+                if (textureIndex < 0) relativeTextureCorners.add(textureIndices.size());
+            }
+            vertexIndices.add(vertexIndex < 0 ? numPositions + vertexIndex : vertexIndex - 1);
+            textureIndices.add(textureIndex < 0 ? numTextures + textureIndex : textureIndex - 1);
+            ++corners;
+        }
+        //Discard degenerate faces so that every face has at least three corners.
+        if (corners < 3) {
+            discardPartialFace();
+            return;
+        }
+        faceStarts.add(vertexIndices.size());
+        faceMaterials.add(currentMaterial);
+    }
+
+    /**
+     * Removes the corners of a face that was not completely read from the index lists.
+     */
+    private void discardPartialFace() {
+        int size = faceStarts.get(faceStarts.size() - 1);
+        vertexIndices.truncate(size);
+        textureIndices.truncate(size);
+        if (relativeVertexCorners == null) return;
+        while (relativeVertexCorners.size() > 0 && relativeVertexCorners.get(relativeVertexCorners.size() - 1) >= size)
+            relativeVertexCorners.truncate(relativeVertexCorners.size() - 1);
+        while (relativeTextureCorners.size() > 0 && relativeTextureCorners.get(relativeTextureCorners.size() - 1) >= size)
+            relativeTextureCorners.truncate(relativeTextureCorners.size() - 1);
+    }
+
+    /**
+     * Parses a range of the obj file on its own, leaving negative indices and the starting material to be resolved when ranges are merged.
+     * @param channel A channel to the obj file.
+     * @param materialIds Maps material names from the mtl file to material ids.
+     * @param defaultMaterial The material id used for faces without a known material.
+     * @param progress Receives the number of bytes read and faces parsed. May be null.
+     * @param start The start of the range. Must be the start of a line.
+     * @param end The end of the range. Must be the start of a line or the end of the file.
+     * @return A parser holding the contents of the range.
+     * @throws IOException The file could not be read.
+     */
+    static ObjParser parseRange(FileChannel channel, Map<String, Integer> materialIds, int defaultMaterial, LoadProgress progress, long start, long end) throws IOException {
+        ObjParser parser = new ObjParser(materialIds, defaultMaterial, true);
+        parser.parse(new ByteTokenizer(channel, start, end, progress), progress);
+        return parser;
+    }
+
+    /**
+     * Concatenates ranges parsed in file order into one parser, rebasing negative indices and carrying usemtl state across range boundaries.
+     * @param ranges The parsed ranges in file order.
+     * @param materialIds Maps material names from the mtl file to material ids.
+     * @param defaultMaterial The material id used for faces without a known material.
+     * @return A parser holding the contents of all ranges.
+     */
+    static ObjParser merge(List<ObjParser> ranges, Map<String, Integer> materialIds, int defaultMaterial) {
+        ObjParser merged = new ObjParser(materialIds, defaultMaterial);
+        int material = defaultMaterial;
+        for (ObjParser range: ranges) {
+            int positionBase = merged.positions.size() / 3, textureBase = merged.textureCoordinates.size() / 2, cornerBase = merged.vertexIndices.size();
+            merged.positions.addAll(range.positions);
+            merged.textureCoordinates.addAll(range.textureCoordinates);
+            merged.vertexIndices.addAll(range.vertexIndices);
+            merged.textureIndices.addAll(range.textureIndices);
+            for (int i = 0; i < range.relativeVertexCorners.size(); ++i) {
+                int corner = cornerBase + range.relativeVertexCorners.get(i);
+                merged.vertexIndices.set(corner, merged.vertexIndices.get(corner) + positionBase);
+            }
+            for (int i = 0; i < range.relativeTextureCorners.size(); ++i) {
+                int corner = cornerBase + range.relativeTextureCorners.get(i);
+                merged.textureIndices.set(corner, merged.textureIndices.get(corner) + textureBase);
+            }
+            for (int i = 0; i < range.faceCount(); ++i) {
+                merged.faceStarts.add(cornerBase + range.faceStarts.get(i + 1));
+                int faceMaterial = range.faceMaterials.get(i);
+                merged.faceMaterials.add(faceMaterial == INHERITED_MATERIAL ? material : faceMaterial);
+            }
+            if (range.currentMaterial != INHERITED_MATERIAL) material = range.currentMaterial;
+        }
+        merged.currentMaterial = material;
+        return merged;
+    }
+
+    /**
+     * @param channel A channel to the obj file.
+     * @param from The position to start searching at.
+     * @param end The position to stop searching at.
+     * @return The position after the first newline at or after from, or end if there is none.
+     * @throws IOException The file could not be read.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (long position = from; position < end; ) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; ++i)
+                if (buffer.get(i) == '\n') return position + i + 1;
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * Recursively splits a range of the obj file in half at line boundaries, then parses the pieces in parallel.
+     */
+    private static class RangeTask extends RecursiveTask<List<ObjParser>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final Map<String, Integer> materialIds;
+        private final int defaultMaterial;
+        private final LoadProgress progress;
+        private final long start, end;
+
+        /**
+         * @param channel A channel to the obj file.
+         * @param materialIds Maps material names from the mtl file to material ids.
+         * @param defaultMaterial The material id used for faces without a known material.
+         * @param progress Receives the number of bytes read and faces parsed. May be null.
+         * @param start The start of the range. Must be the start of a line.
+         * @param end The end of the range. Must be the start of a line or the end of the file.
+         */
+        private RangeTask(FileChannel channel, Map<String, Integer> materialIds, int defaultMaterial, LoadProgress progress, long start, long end) {
+            this.channel = channel;
+            this.materialIds = materialIds;
+            this.defaultMaterial = defaultMaterial;
+            this.progress = progress;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return The parsed pieces of this range in file order.
+         */
+        @Override
+        protected List<ObjParser> compute() {
+            try {
+                long middle = end - start >= 2 * MIN_RANGE_SIZE ? nextLineStart(channel, start + (end - start) / 2, end) : end;
+                if (middle >= end) {
+                    List<ObjParser> parsers = new ArrayList<>();
+                    parsers.add(parseRange(channel, materialIds, defaultMaterial, progress, start, end));
+                    return parsers;
+                }
+                RangeTask second = new RangeTask(channel, materialIds, defaultMaterial, progress, middle, end);
+                second.fork();
+                List<ObjParser> parsers = new RangeTask(channel, materialIds, defaultMaterial, progress, start, middle).compute();
+                parsers.addAll(second.join());
+                return parsers;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,25 +1,26 @@
 package com.knkevin.model_tools.models.utils;
 
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.world.flag.FeatureFlags;
 import net.minecraft.world.level.block.*;
 import net.minecraftforge.registries.ForgeRegistries;
 import org.joml.Vector4i;
 
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * A class to read through a jar file and extract the names and colors of valid blocks.
+ * A class to read through a jar file or the loaded resource packs and extract the names and colors of valid blocks.
  * Valid blocks are blocks that can be used to approximate a pixel color.
  */
 public class BlockColors {
@@ -28,93 +29,199 @@ public class BlockColors {
 	 */
 	private static final Pattern keyValuePattern = Pattern.compile("\"([^\"]+)\": \"([^\"]+)\"(?:,)?|(\\{\\})");
 
+	/**
+	 * The directory of blockstate files.
+	 */
+	private static final String blockStatesPath = "assets/minecraft/blockstates/";
+
+	/**
+	 * Opens files by their path, such as assets/minecraft/models/block/stone.json.
+	 */
+	@FunctionalInterface
+	public interface Source {
+		/**
+		 * @param path The path of a file.
+		 * @return A stream of the contents of the file, or null if there is no such file.
+		 * @throws IOException The file could not be opened.
+		 */
+		InputStream open(String path) throws IOException;
+	}
+
 	/**
 	 * @param jarFile A Minecraft jar file.
 	 * @return A Map of block names to integers representing their average colors.
 	 * @throws IOException The JarFile could not be read.
 	 */
 	public static Map<String, Integer> getBlockColors(JarFile jarFile) throws IOException {
-		Map<String, Integer> blockColors = new HashMap<>();
-		List<JarEntry> blockStates = getBlockStateEntriesFromJar(jarFile);
-		for (JarEntry entry: blockStates) {
-			JarEntry firstModel = getFirstModelEntry(jarFile, entry);
-			if (firstModel != null && isCubeModel(jarFile, firstModel) && isValidBlock(entry) && isValidName(entry)) {
-				String blockName = entry.getName().replace("assets/minecraft/blockstates/","").replace(".json","");
-				JarEntry texture = getTexture(jarFile, firstModel);
-				int color = getTextureColor(jarFile, texture);
-				blockColors.put(blockName, color);
-			}
+		Source source = path -> {
+			JarEntry entry = jarFile.getJarEntry(path);
+			return entry == null ? null : jarFile.getInputStream(entry);
+		};
+		return getBlockColors(getBlockStatePathsFromJar(jarFile), source, null);
+	}
+
+	/**
+	 * Reads the textures of the resource packs that are currently loaded, so colors match what players see.
+	 * @param resourceManager The resources of the loaded resource packs.
+	 * @param progress Used to cancel reading. May be null.
+	 * @return A Map of block names to integers representing their average colors.
+	 * @throws IOException A resource could not be read.
+	 * @throws java.util.concurrent.CancellationException Reading was cancelled through the progress.
+	 */
+	public static Map<String, Integer> getBlockColors(ResourceManager resourceManager, @Nullable LoadProgress progress) throws IOException {
+		Source source = path -> {
+			//Paths are assets/<namespace>/<path within the namespace>.
+			int slash = path.indexOf('/', "assets/".length());
+			ResourceLocation location = new ResourceLocation(path.substring("assets/".length(), slash), path.substring(slash + 1));
+			Optional<Resource> resource = resourceManager.getResource(location);
+			return resource.isPresent() ? resource.get().open() : null;
+		};
+		List<String> blockStates = new ArrayList<>();
+		for (ResourceLocation block: ForgeRegistries.BLOCKS.getKeys())
+			if (block.getNamespace().equals("minecraft")) blockStates.add(blockStatesPath + block.getPath() + ".json");
+		return getBlockColors(blockStates, source, progress);
+	}
+
+	/**
+	 * Blockstates are read in parallel. Parent models and textures shared by several blocks are only read once.
+	 * @param blockStates The paths of the blockstate files to read.
+	 * @param source Opens the blockstate, model, and texture files.
+	 * @param progress Used to cancel reading. May be null.
+	 * @return A Map of block names to integers representing their average colors.
+	 * @throws IOException A file could not be read.
+	 */
+	private static Map<String, Integer> getBlockColors(List<String> blockStates, Source source, @Nullable LoadProgress progress) throws IOException {
+		Map<String, Integer> blockColors = new ConcurrentHashMap<>();
+		Map<String, Boolean> cubeModels = new ConcurrentHashMap<>();
+		Map<String, Integer> textureColors = new ConcurrentHashMap<>();
+		try {
+			blockStates.parallelStream().forEach(blockState -> {
+				if (progress != null) progress.checkCancelled();
+				String blockName = blockState.replace(blockStatesPath,"").replace(".json","");
+				try {
+					if (!isValidBlock(blockName) || !isValidName(blockName)) return;
+					String firstModel = getFirstModel(source, blockState);
+					if (firstModel == null || !isCubeModel(source, firstModel, cubeModels)) return;
+					String texture = getTexture(source, firstModel);
+					if (texture == null) return;
+					Integer color = textureColors.get(texture);
+					if (color == null) color = getTextureColor(source, texture);
+					if (color == null) return;
+					textureColors.put(texture, color);
+					blockColors.put(blockName, color);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		} return blockColors;
 	}
 
 	/**
-	 * Searches through the JarFile and returns a list of entries that represent blockstate json files.
 	 * @param jarFile A Minecraft jar file.
-	 * @return A list of JarEntries to blockstate files.
+	 * @return The id of the game version of the jar file, such as 1.19.4, or an empty String if it has none.
+	 * @throws IOException The JarFile could not be read.
+	 */
+	public static String getGameVersion(JarFile jarFile) throws IOException {
+		JarEntry version = jarFile.getJarEntry("version.json");
+		if (version == null) return "";
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(jarFile.getInputStream(version)))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				Matcher m = keyValuePattern.matcher(line.strip());
+				if (m.find() && "id".equals(m.group(1))) return m.group(2);
+			}
+		} return "";
+	}
+
+	/**
+	 * Searches through the JarFile and returns a list of paths of blockstate json files.
+	 * @param jarFile A Minecraft jar file.
+	 * @return A list of paths to blockstate files.
 	 */
-	private static List<JarEntry> getBlockStateEntriesFromJar(JarFile jarFile) {
-		List<JarEntry> blockStates = new ArrayList<>();
+	private static List<String> getBlockStatePathsFromJar(JarFile jarFile) {
+		List<String> blockStates = new ArrayList<>();
 		Enumeration<JarEntry> entries = jarFile.entries();
 		while (entries.hasMoreElements()) {
 			JarEntry entry = entries.nextElement();
-			if (entry.getName().startsWith("assets/minecraft/blockstates/"))
-				blockStates.add(entry);
+			if (entry.getName().startsWith(blockStatesPath))
+				blockStates.add(entry.getName());
 		} return blockStates;
 	}
 
 	/**
-	 * Searches through the blockstate file and returns an entry to the first model specified in the file.
-	 * @param jarFile  A Minecraft jar file.
-	 * @param blockState A JarEntry representing the blockstate file.
-	 * @return A JarEntry that represents a model json file.
-	 * @throws IOException The JarFile could not be read.
+	 * Searches through the blockstate file and returns the path of the first model specified in the file.
+	 * @param source Opens the blockstate file.
+	 * @param blockState The path of the blockstate file.
+	 * @return The path of a model json file, or null if there is none.
+	 * @throws IOException The blockstate file could not be read.
 	 */
-	private static JarEntry getFirstModelEntry(JarFile jarFile, JarEntry blockState) throws IOException {
-		InputStream inputStream = jarFile.getInputStream(blockState);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-			Matcher m = keyValuePattern.matcher(line.strip());
-			if (m.find()) {
-				String key = m.group(1);
-				String value = m.group(2);
-				if (key.equals("model")) {
-					String modelName = value.replace("minecraft:", "");
-					String modelFileName = "assets/minecraft/models/" + modelName + ".json";
-					return jarFile.getJarEntry(modelFileName);
+	private static String getFirstModel(Source source, String blockState) throws IOException {
+		BufferedReader reader = open(source, blockState);
+		if (reader == null) return null;
+		try (reader) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				Matcher m = keyValuePattern.matcher(line.strip());
+				if (m.find()) {
+					String key = m.group(1);
+					String value = m.group(2);
+					if (key.equals("model")) {
+						String modelName = value.replace("minecraft:", "");
+						return "assets/minecraft/models/" + modelName + ".json";
+					}
 				}
 			}
 		} return null;
 	}
 
 	/**
-	 * @param jarFile  A Minecraft jar file.
-	 * @param model A JarEntry representing the model file.
+	 * @param source Opens the model files.
+	 * @param model The path of the model file.
+	 * @param cubeModels The models already checked, mapped to whether they are cube models. The model is added to it.
 	 * @return True if the given model is a cube_all model or if it has a parent model that is one.
-	 * @throws IOException The JarFile could not be read.
+	 * @throws IOException A model file could not be read.
+	 */
+	private static boolean isCubeModel(Source source, String model, Map<String, Boolean> cubeModels) throws IOException {
+		Boolean known = cubeModels.get(model);
+		if (known != null) return known;
+		BufferedReader reader = open(source, model);
+		if (reader == null) return false;
+		boolean cubeModel = false;
+		try (reader) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				Matcher m = keyValuePattern.matcher(line.strip());
+				if (!m.find()) continue;
+				String key = m.group(1), value = m.group(2);
+				if (!key.equals("parent")) continue;
+				if (value.equals("minecraft:block/cube_all")) {
+					cubeModel = true;
+				} else {
+					String modelName = value.replace("minecraft:", "");
+					cubeModel = isCubeModel(source, "assets/minecraft/models/" + modelName + ".json", cubeModels);
+				}
+				break;
+			}
+		}
+		cubeModels.put(model, cubeModel);
+		return cubeModel;
+	}
+
+	/**
+	 * @param source Opens the file.
+	 * @param path The path of a text file.
+	 * @return A reader of the file, or null if there is no such file.
+	 * @throws IOException The file could not be opened.
 	 */
-	private static boolean isCubeModel(JarFile jarFile, JarEntry model) throws IOException {
-		InputStream inputStream = jarFile.getInputStream(model);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-			Matcher m = keyValuePattern.matcher(line.strip());
-			if (!m.find()) continue;
-			String key = m.group(1), value = m.group(2);
-			if (!key.equals("parent")) continue;
-			if (value.equals("minecraft:block/cube_all")) return true;
-			String modelName = value.replace("minecraft:", "");
-			String modelFileName = "assets/minecraft/models/" + modelName + ".json";
-			return isCubeModel(jarFile, jarFile.getJarEntry(modelFileName));
-		} return false;
+	private static BufferedReader open(Source source, String path) throws IOException {
+		InputStream inputStream = source.open(path);
+		return inputStream == null ? null : new BufferedReader(new InputStreamReader(inputStream));
 	}
 
 	/**
-	 * @param entry A JarEntry representing a blockstate file.
+	 * @param blockName The name of a block.
 	 * @return True if the block isn't an instance of one of the listed blocks, false otherwise.
 	 */
-	private static boolean isValidBlock(JarEntry entry) {
-		String blockName = entry.getName().replace("assets/minecraft/blockstates/","").replace(".json","");
+	private static boolean isValidBlock(String blockName) {
 		Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockName));
 		if (block == null || block.defaultBlockState().isAir() || block.requiredFeatures().contains(FeatureFlags.UPDATE_1_20)) return false;
 		List<Class<?>> classes = List.of(
@@ -134,56 +241,64 @@ public class BlockColors {
 	}
 
 	/**
-	 * @param entry A JarEntry representing a blockstate file.
+	 * @param blockName The name of a block.
 	 * @return True if the block's name doesn't contain one of the listed substrings, false otherwise.
 	 */
-	private static boolean isValidName(JarEntry entry) {
+	private static boolean isValidName(String blockName) {
 		String[] invalidStrings = new String[] {
 				"_ore",
 				"_coral_block"
 		};
-		String entryName = entry.getName();
 		for (String invalidString: invalidStrings) {
-			if (entryName.contains(invalidString)) return false;
+			if (blockName.contains(invalidString)) return false;
 		} return true;
 	}
 
 	/**
-	 * @param jarFile A Minecraft jar file.
-	 * @param model A JarEntry representing block model file.
-	 * @return A JarEntry representing a texture file.
-	 * @throws IOException The JarFile could not be read.
+	 * @param source Opens the model file.
+	 * @param model The path of a block model file.
+	 * @return The path of a texture file, or null if the model has no texture for all sides.
+	 * @throws IOException The model file could not be read.
 	 */
-	private static JarEntry getTexture(JarFile jarFile, JarEntry model) throws IOException {
-		InputStream inputStream = jarFile.getInputStream(model);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-			Matcher m = keyValuePattern.matcher(line.strip());
-			if (!m.find()) continue;
-			String key = m.group(1), value = m.group(2);
-			if (!key.equals("all")) continue;
-			String textureName = value.replace("minecraft:","");
-			return jarFile.getJarEntry("assets/minecraft/textures/" + textureName + ".png");
+	private static String getTexture(Source source, String model) throws IOException {
+		BufferedReader reader = open(source, model);
+		if (reader == null) return null;
+		try (reader) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				Matcher m = keyValuePattern.matcher(line.strip());
+				if (!m.find()) continue;
+				String key = m.group(1), value = m.group(2);
+				if (!key.equals("all")) continue;
+				String textureName = value.replace("minecraft:","");
+				return "assets/minecraft/textures/" + textureName + ".png";
+			}
 		} return null;
 	}
 
 	/**
-	 * @param jarFile A Minecraft jar file.
-	 * @param texture A JarEntry representing a texture file.
-	 * @return The average color of the texture as a Vector4i in ARGB format.
-	 * @throws IOException The JarFile could not be read.
+	 * @param source Opens the texture file.
+	 * @param texture The path of a texture file.
+	 * @return The average color of the texture as an integer in ARGB format, or null if there is no such texture.
+	 * @throws IOException The texture file could not be read.
 	 */
-	private static int getTextureColor(JarFile jarFile, JarEntry texture) throws IOException {
-		BufferedImage img = ImageIO.read(jarFile.getInputStream(texture));
-		Vector4i average = new Vector4i();
-		int count = 0;
-		for (int y = 0; y < img.getHeight(); ++y) {
-			for (int x = 0; x < img.getWidth(); ++x) {
-				Vector4i pixel = VectorColors.intToARGB(img.getRGB(x, y));
-				average.add(pixel);
-				++count;
-			}
-		} return VectorColors.ARGBToInt(average.div(count));
+	private static Integer getTextureColor(Source source, String texture) throws IOException {
+		InputStream inputStream = source.open(texture);
+		if (inputStream == null) return null;
+		BufferedImage img;
+		try (inputStream) {
+			img = ImageIO.read(inputStream);
+		}
+		if (img == null) return null;
+		int width = img.getWidth(), height = img.getHeight();
+		int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+		long alpha = 0, red = 0, green = 0, blue = 0;
+		for (int pixel: pixels) {
+			alpha += pixel >>> 24;
+			red += pixel >> 16 & 0xFF;
+			green += pixel >> 8 & 0xFF;
+			blue += pixel & 0xFF;
+		}
+		int count = pixels.length;
+		return VectorColors.ARGBToInt(new Vector4i((int) (alpha / count), (int) (red / count), (int) (green / count), (int) (blue / count)));
 	}
 }
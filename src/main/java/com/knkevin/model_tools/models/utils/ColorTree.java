@@ -0,0 +1,106 @@
+package com.knkevin.model_tools.models.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A balanced k-d tree over points in a three-dimensional color space, answering exact nearest-point queries.
+ * The tree is implicit: the node of a range of the arrays is its middle element, and its children are the ranges on either side.
+ * Queries do not allocate or modify the tree, so a ColorTree can be queried from many threads at once.
+ */
+public class ColorTree {
+    /**
+     * The coordinates of the points, three per point, in tree order.
+     */
+    private final float[] points;
+
+    /**
+     * The index of each point in tree order, in the array the tree was built from.
+     */
+    private final int[] ids;
+
+    /**
+     * @param coordinates The coordinates of the points, three per point. Must hold at least one point.
+     */
+    public ColorTree(float[] coordinates) {
+        int count = coordinates.length / 3;
+        if (count == 0) throw new IllegalArgumentException("A ColorTree needs at least one point.");
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; ++i) order[i] = i;
+        build(coordinates, order, 0, count, 0);
+
+        points = new float[count * 3];
+        ids = new int[count];
+        for (int i = 0; i < count; ++i) {
+            ids[i] = order[i];
+            System.arraycopy(coordinates, order[i] * 3, points, i * 3, 3);
+        }
+    }
+
+    /**
+     * Orders a range of points so that the middle point splits the rest along an axis, then orders both halves along the next axis.
+     * @param coordinates The coordinates of the points.
+     * @param order The points of the range.
+     * @param start The index of the first point of the range.
+     * @param end The index after the last point of the range.
+     * @param axis The axis to split the range along.
+     */
+    private static void build(float[] coordinates, Integer[] order, int start, int end, int axis) {
+        if (end - start <= 1) return;
+        Arrays.sort(order, start, end, Comparator.comparingDouble(point -> coordinates[point * 3 + axis]));
+        int middle = (start + end) >>> 1;
+        build(coordinates, order, start, middle, (axis + 1) % 3);
+        build(coordinates, order, middle + 1, end, (axis + 1) % 3);
+    }
+
+    /**
+     * @return The number of points in this ColorTree.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param x The first coordinate of the query.
+     * @param y The second coordinate of the query.
+     * @param z The third coordinate of the query.
+     * @return The index of the nearest point in the array the tree was built from.
+     */
+    public int nearest(float x, float y, float z) {
+        return ids[nearest(0, ids.length, 0, x, y, z, ids.length >>> 1)];
+    }
+
+    /**
+     * Searches a subtree, visiting the side of the split containing the query first,
+     * and only visiting the other side if the splitting plane is closer than the nearest point so far.
+     * @param start The index of the first point of the subtree.
+     * @param end The index after the last point of the subtree.
+     * @param axis The axis the subtree is split along.
+     * @param best The nearest point found so far, in tree order.
+     * @return The nearest point found in the subtree or before it, in tree order.
+     */
+    private int nearest(int start, int end, int axis, float x, float y, float z, int best) {
+        if (start >= end) return best;
+        int middle = (start + end) >>> 1;
+        if (distanceSquared(middle, x, y, z) < distanceSquared(best, x, y, z)) best = middle;
+        float delta = (axis == 0 ? x : axis == 1 ? y : z) - points[middle * 3 + axis];
+        int next = (axis + 1) % 3;
+        if (delta < 0) {
+            best = nearest(start, middle, next, x, y, z, best);
+            if (delta * delta < distanceSquared(best, x, y, z)) best = nearest(middle + 1, end, next, x, y, z, best);
+        } else {
+            best = nearest(middle + 1, end, next, x, y, z, best);
+            if (delta * delta < distanceSquared(best, x, y, z)) best = nearest(start, middle, next, x, y, z, best);
+        }
+        return best;
+    }
+
+    /**
+     * @param point A point, in tree order.
+     * @return The squared distance from the point to the query.
+     */
+    private float distanceSquared(int point, float x, float y, float z) {
+        float dx = points[point * 3] - x, dy = points[point * 3 + 1] - y, dz = points[point * 3 + 2] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,97 @@
+package com.knkevin.model_tools.models.utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive floats.
+ */
+public class FloatList {
+    /**
+     * The backing array of this FloatList.
+     */
+    private float[] values;
+
+    /**
+     * The number of floats in this FloatList.
+     */
+    private int size;
+
+    public FloatList() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The initial capacity of this FloatList.
+     */
+    public FloatList(int capacity) {
+        values = new float[Math.max(capacity, 1)];
+    }
+
+    /**
+     * @param value The float to append.
+     */
+    public void add(float value) {
+        if (size == values.length) grow(size + 1);
+        values[size++] = value;
+    }
+
+    /**
+     * @param x The first float to append.
+     * @param y The second float to append.
+     */
+    public void add(float x, float y) {
+        if (size + 2 > values.length) grow(size + 2);
+        values[size++] = x;
+        values[size++] = y;
+    }
+
+    /**
+     * @param x The first float to append.
+     * @param y The second float to append.
+     * @param z The third float to append.
+     */
+    public void add(float x, float y, float z) {
+        if (size + 3 > values.length) grow(size + 3);
+        values[size++] = x;
+        values[size++] = y;
+        values[size++] = z;
+    }
+
+    /**
+     * @param other A FloatList whose floats are appended to this FloatList.
+     */
+    public void addAll(FloatList other) {
+        if (size + other.size > values.length) grow(size + other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * @param index The index of the float.
+     * @return The float at the index.
+     */
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return The number of floats in this FloatList.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A copy of the floats in this FloatList, trimmed to its size.
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @param minCapacity The minimum capacity required.
+     */
+    private void grow(int minCapacity) {
+        values = Arrays.copyOf(values, Math.max(minCapacity, values.length + (values.length >> 1)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.knkevin.model_tools.models.utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive ints.
+ */
+public class IntList {
+    /**
+     * The backing array of this IntList.
+     */
+    private int[] values;
+
+    /**
+     * The number of ints in this IntList.
+     */
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The initial capacity of this IntList.
+     */
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * @param value The int to append.
+     */
+    public void add(int value) {
+        if (size == values.length) grow(size + 1);
+        values[size++] = value;
+    }
+
+    /**
+     * @param other An IntList whose ints are appended to this IntList.
+     */
+    public void addAll(IntList other) {
+        if (size + other.size > values.length) grow(size + other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * @param index The index of the int.
+     * @return The int at the index.
+     */
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index The index of the int.
+     * @param value The new value of the int.
+     */
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+
+    /**
+     * @return The number of ints in this IntList.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes ints from the end of this IntList, keeping its capacity.
+     * @param size The new size of this IntList. Must not be greater than the current size.
+     */
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return A copy of the ints in this IntList, trimmed to its size.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @param minCapacity The minimum capacity required.
+     */
+    private void grow(int minCapacity) {
+        values = Arrays.copyOf(values, Math.max(minCapacity, values.length + (values.length >> 1)));
+    }
+}
@@ -0,0 +1,159 @@
+package com.knkevin.model_tools.models.utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of loading a Model, and lets the load be cancelled from another thread.
+ * Parsers and the Voxelizer report their progress in batches and check for cancellation whenever they do.
+ */
+public class LoadProgress {
+    /**
+     * The stages of loading a Model.
+     */
+    public enum Stage {READING, VOXELIZING}
+
+    /**
+     * The number of faces or records processed between progress reports.
+     */
+    public static final int BATCH_SIZE = 1 << 14;
+
+    /**
+     * The size in bytes of the file being loaded.
+     */
+    private final long totalBytes;
+
+    /**
+     * The number of bytes of the file that have been read.
+     */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /**
+     * The number of faces that have been parsed.
+     */
+    private final AtomicInteger facesParsed = new AtomicInteger();
+
+    /**
+     * The number of faces that have been voxelized.
+     */
+    private final AtomicInteger facesVoxelized = new AtomicInteger();
+
+    /**
+     * The number of faces to voxelize.
+     */
+    private volatile int totalFaces;
+
+    /**
+     * The current stage of the load.
+     */
+    private volatile Stage stage = Stage.READING;
+
+    /**
+     * Whether the load has been cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * @param totalBytes The size in bytes of the file being loaded.
+     */
+    public LoadProgress(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Requests that the load stops at the next progress report.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if the load has been cancelled, false otherwise.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException The load has been cancelled.
+     */
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException("Model loading was cancelled.");
+    }
+
+    /**
+     * @param bytes The number of bytes read since the last report.
+     * @throws CancellationException The load has been cancelled.
+     */
+    public void addBytes(long bytes) {
+        checkCancelled();
+        bytesRead.addAndGet(bytes);
+    }
+
+    /**
+     * @param faces The number of faces parsed since the last report.
+     * @throws CancellationException The load has been cancelled.
+     */
+    public void addFaces(int faces) {
+        checkCancelled();
+        facesParsed.addAndGet(faces);
+    }
+
+    /**
+     * Moves the load to the voxelizing stage.
+     * @param faces The number of faces to voxelize.
+     * @throws CancellationException The load has been cancelled.
+     */
+    public void startVoxelizing(int faces) {
+        checkCancelled();
+        facesVoxelized.set(0);
+        totalFaces = faces;
+        stage = Stage.VOXELIZING;
+    }
+
+    /**
+     * @param faces The number of faces voxelized since the last report.
+     * @throws CancellationException The load has been cancelled.
+     */
+    public void addVoxelizedFaces(int faces) {
+        checkCancelled();
+        facesVoxelized.addAndGet(faces);
+    }
+
+    /**
+     * @return The current stage of the load.
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * @return The number of bytes of the file that have been read.
+     */
+    public long getBytesRead() {
+        return Math.min(bytesRead.get(), totalBytes);
+    }
+
+    /**
+     * @return The size in bytes of the file being loaded.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return The number of faces that have been parsed.
+     */
+    public int getFacesParsed() {
+        return facesParsed.get();
+    }
+
+    /**
+     * @return A number 0-1 representing how much of the current stage is done.
+     */
+    public float getFraction() {
+        if (stage == Stage.READING) return totalBytes == 0 ? 0 : (float) getBytesRead() / totalBytes;
+        return totalFaces == 0 ? 1 : Math.min(1, (float) facesVoxelized.get() / totalFaces);
+    }
+}
@@ -0,0 +1,231 @@
+package com.knkevin.model_tools.models.utils;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * An indexed polygon mesh stored as flat primitive arrays.
+ * Faces are stored in compressed sparse row form: the corners of face i are the entries from faceStarts[i] to faceStarts[i+1] of the index arrays.
+ */
+public class Mesh {
+    /**
+     * The xyz coordinates of each vertex, packed together.
+     */
+    public final float[] positions;
+
+    /**
+     * The uv coordinates of each texture vertex, packed together.
+     */
+    public final float[] textureCoordinates;
+
+    /**
+     * The index into the corner arrays of the first corner of each face, followed by the total number of corners.
+     */
+    public final int[] faceStarts;
+
+    /**
+     * The index of the vertex of each face corner.
+     */
+    public final int[] vertexIndices;
+
+    /**
+     * The index of the texture vertex of each face corner, or -1 if the corner has none. Null if no corner has one.
+     */
+    public final int[] textureIndices;
+
+    /**
+     * The material id of each face. Null if the mesh has a single material.
+     */
+    public final int[] faceMaterials;
+
+    /**
+     * @param positions The xyz coordinates of each vertex, packed together.
+     * @param textureCoordinates The uv coordinates of each texture vertex, packed together.
+     * @param faceStarts The index of the first corner of each face, followed by the total number of corners.
+     * @param vertexIndices The index of the vertex of each face corner.
+     * @param textureIndices The index of the texture vertex of each face corner, or -1 if the corner has none. May be null.
+     * @param faceMaterials The material id of each face. May be null.
+     * @throws IllegalArgumentException An index refers to a vertex that does not exist.
+     */
+    public Mesh(float[] positions, float[] textureCoordinates, int[] faceStarts, int[] vertexIndices, int[] textureIndices, int[] faceMaterials) {
+        this.positions = positions;
+        this.textureCoordinates = textureCoordinates;
+        this.faceStarts = faceStarts;
+        this.vertexIndices = vertexIndices;
+        this.textureIndices = textureIndices != null && Arrays.stream(textureIndices).anyMatch(i -> i >= 0) ? textureIndices : null;
+        this.faceMaterials = faceMaterials;
+        validate();
+    }
+
+    /**
+     * Builds a triangle mesh from a flat array of triangle corners, merging corners with identical coordinates into shared vertices.
+     * @param corners A flat array of xyz coordinates, where every nine floats form a triangle.
+     * @return A Mesh of the triangles.
+     */
+    public static Mesh fromTriangles(float[] corners) {
+        int numCorners = corners.length / 3;
+        int[] vertexIndices = new int[numCorners];
+        int[] faceStarts = new int[numCorners / 3 + 1];
+        for (int i = 0; i < faceStarts.length; ++i) faceStarts[i] = i * 3;
+
+        //Open addressing table of vertex ids, keyed by the bits of their coordinates.
+        int[] table = new int[Integer.highestOneBit(Math.max(numCorners / 2, 8)) << 1];
+        Arrays.fill(table, -1);
+        float[] positions = new float[Math.min(corners.length, 3 * 1024)];
+        int numVertices = 0;
+        for (int corner = 0; corner < numCorners; ++corner) {
+            //Adding 0 turns -0 into 0 so that both hash the same.
+            float x = corners[corner * 3] + 0f, y = corners[corner * 3 + 1] + 0f, z = corners[corner * 3 + 2] + 0f;
+            int mask = table.length - 1;
+            int slot = hash(x, y, z) & mask;
+            while (table[slot] != -1) {
+                int v = table[slot] * 3;
+                if (positions[v] == x && positions[v + 1] == y && positions[v + 2] == z) break;
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] != -1) {
+                vertexIndices[corner] = table[slot];
+                continue;
+            }
+            if (numVertices * 3 == positions.length) positions = Arrays.copyOf(positions, Math.min(corners.length, positions.length * 2));
+            positions[numVertices * 3] = x;
+            positions[numVertices * 3 + 1] = y;
+            positions[numVertices * 3 + 2] = z;
+            table[slot] = numVertices;
+            vertexIndices[corner] = numVertices++;
+            if (numVertices * 2 > table.length) table = rehash(table, positions, numVertices);
+        }
+        return new Mesh(Arrays.copyOf(positions, numVertices * 3), new float[0], faceStarts, vertexIndices, null, null);
+    }
+
+    /**
+     * @return The number of faces in this Mesh.
+     */
+    public int faceCount() {
+        return faceStarts.length - 1;
+    }
+
+    /**
+     * @return The number of vertices in this Mesh.
+     */
+    public int vertexCount() {
+        return positions.length / 3;
+    }
+
+    /**
+     * @param face The index of a face.
+     * @return The material id of the face, or 0 if this Mesh has a single material.
+     */
+    public int getMaterial(int face) {
+        return faceMaterials == null ? 0 : faceMaterials[face];
+    }
+
+    /**
+     * Sets the two vectors to the minimum and maximum corners of the bounding box of this Mesh.
+     * @param min The vector to store the minimum corner in.
+     * @param max The vector to store the maximum corner in.
+     */
+    public void getBounds(Vector3f min, Vector3f max) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < positions.length; i += 3) {
+            minX = Math.min(minX, positions[i]);
+            minY = Math.min(minY, positions[i+1]);
+            minZ = Math.min(minZ, positions[i+2]);
+            maxX = Math.max(maxX, positions[i]);
+            maxY = Math.max(maxY, positions[i+1]);
+            maxZ = Math.max(maxZ, positions[i+2]);
+        }
+        if (positions.length == 0) {
+            min.set(0);
+            max.set(0);
+        } else {
+            min.set(minX, minY, minZ);
+            max.set(maxX, maxY, maxZ);
+        }
+    }
+
+    /**
+     * Transforms every vertex of this Mesh once, without allocating per vertex. Faces can then read their corners from the result by vertex index.
+     * @param matrix The transformation to apply to each vertex.
+     * @param destination An array to reuse for the result. May be null or too small, in which case a new array is allocated.
+     * @return The transformed xyz coordinates of each vertex, packed together.
+     */
+    public float[] transformPositions(Matrix4f matrix, float[] destination) {
+        float[] result = destination != null && destination.length >= positions.length ? destination : new float[positions.length];
+        float m00 = matrix.m00(), m01 = matrix.m01(), m02 = matrix.m02();
+        float m10 = matrix.m10(), m11 = matrix.m11(), m12 = matrix.m12();
+        float m20 = matrix.m20(), m21 = matrix.m21(), m22 = matrix.m22();
+        float m30 = matrix.m30(), m31 = matrix.m31(), m32 = matrix.m32();
+        for (int i = 0; i < positions.length; i += 3) {
+            float x = positions[i], y = positions[i+1], z = positions[i+2];
+            //Grouped the same way as Matrix4f.transformPosition, so both round identically.
+            result[i] = m00 * x + (m10 * y + (m20 * z + m30));
+            result[i+1] = m01 * x + (m11 * y + (m21 * z + m31));
+            result[i+2] = m02 * x + (m12 * y + (m22 * z + m32));
+        }
+        return result;
+    }
+
+    /**
+     * Moves every vertex of this Mesh.
+     * @param x The distance to move along the x-axis.
+     * @param y The distance to move along the y-axis.
+     * @param z The distance to move along the z-axis.
+     */
+    public void translate(float x, float y, float z) {
+        for (int i = 0; i < positions.length; i += 3) {
+            positions[i] += x;
+            positions[i+1] += y;
+            positions[i+2] += z;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException An index refers to a vertex that does not exist.
+     */
+    private void validate() {
+        int numVertices = vertexCount(), numTextures = textureCoordinates.length / 2;
+        if (faceStarts.length == 0 || faceStarts[faceStarts.length - 1] != vertexIndices.length)
+            throw new IllegalArgumentException("Face offsets do not match the number of corners.");
+        for (int index: vertexIndices)
+            if (index < 0 || index >= numVertices) throw new IllegalArgumentException("Vertex index out of range: " + (index + 1) + ".");
+        //Corners with missing texture vertices are treated as untextured rather than failing the whole Mesh.
+        if (textureIndices != null)
+            for (int i = 0; i < textureIndices.length; ++i)
+                if (textureIndices[i] >= numTextures || textureIndices[i] < -1) textureIndices[i] = -1;
+    }
+
+    /**
+     * @param table An open addressing table of vertex ids.
+     * @param positions The coordinates of the vertices in the table.
+     * @param numVertices The number of vertices in the table.
+     * @return A table twice the size holding the same vertices.
+     */
+    private static int[] rehash(int[] table, float[] positions, int numVertices) {
+        int[] newTable = new int[table.length * 2];
+        Arrays.fill(newTable, -1);
+        int mask = newTable.length - 1;
+        for (int v = 0; v < numVertices; ++v) {
+            int slot = hash(positions[v * 3], positions[v * 3 + 1], positions[v * 3 + 2]) & mask;
+            while (newTable[slot] != -1) slot = (slot + 1) & mask;
+            newTable[slot] = v;
+        }
+        return newTable;
+    }
+
+    /**
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @param z Z-coordinate.
+     * @return A well mixed hash of the coordinates.
+     */
+    private static int hash(float x, float y, float z) {
+        long h = Float.floatToIntBits(x) * 0x9E3779B97F4A7C15L;
+        h = (h ^ Float.floatToIntBits(y)) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ Float.floatToIntBits(z)) * 0x165667B19E3779F9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
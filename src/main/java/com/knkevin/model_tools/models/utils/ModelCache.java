@@ -0,0 +1,302 @@
+package com.knkevin.model_tools.models.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores parsed Meshes in binary files next to their source files, so that loading the same file again skips parsing.
+ * A cache file holds a header describing its source files, followed by the arrays of the Mesh as little-endian values.
+ * The cache is ignored once the size or contents of any source file change.
+ */
+public class ModelCache {
+    /**
+     * Identifies a cache file.
+     */
+    private static final int MAGIC = 0x4D544D43;
+
+    /**
+     * Incremented whenever the layout of cache files changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The extension appended to the name of a source file to get the name of its cache file.
+     */
+    public static final String EXTENSION = ".cache";
+
+    /**
+     * The maximum number of bytes mapped or buffered at once when reading or writing arrays.
+     */
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    /**
+     * The maximum size of the header of a cache file.
+     */
+    private static final int MAX_HEADER_SIZE = 1 << 20;
+
+    /**
+     * A Mesh read from a cache file, along with any extra data stored by the Model that wrote it.
+     * @param mesh The cached Mesh.
+     * @param extra The extra data, such as material definitions.
+     */
+    public record Entry(Mesh mesh, byte[] extra) {}
+
+    /**
+     * @param source A model file.
+     * @return The cache file for the model file.
+     */
+    public static File getCacheFile(File source) {
+        return new File(source.getParentFile(), source.getName() + EXTENSION);
+    }
+
+    /**
+     * Reads the cached Mesh of a model file if the cache is up-to-date.
+     * Any problem with the cache file is treated as a cache miss.
+     * @param source The model file.
+     * @param dependencies Other files the Mesh was built from, such as an mtl file. They do not need to exist.
+     * @return The cached Mesh and extra data, or null if there is no up-to-date cache.
+     */
+    public static Entry read(File source, File... dependencies) {
+        File cacheFile = getCacheFile(source);
+        if (!cacheFile.isFile()) return null;
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            //The header is read rather than mapped, so that a stale cache file is not held open by a mapping when it gets replaced.
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) return null;
+            File[] files = tracked(source, dependencies);
+            if (header.getInt() != files.length) return null;
+            for (File file: files) {
+                int recordStart = header.position();
+                boolean exists = header.get() != 0;
+                long size = header.getLong(), modified = header.getLong(), checksum = header.getLong();
+                if (exists != file.isFile()) return null;
+                if (!exists) continue;
+                if (size != file.length()) return null;
+                long currentModified = file.lastModified();
+                if (modified == currentModified) continue;
+                //The file was touched, so only reuse the cache if its contents are unchanged.
+                if (checksum != checksum(file)) return null;
+                updateModified(cacheFile, recordStart + 9, currentModified);
+            }
+
+            int extraLength = header.getInt();
+            if (extraLength < 0 || extraLength > header.remaining()) return null;
+            byte[] extra = new byte[extraLength];
+            header.get(extra);
+            int positions = header.getInt(), textureCoordinates = header.getInt(), faceStarts = header.getInt();
+            int vertexIndices = header.getInt(), textureIndices = header.getInt(), faceMaterials = header.getInt();
+            long position = align(header.position());
+            //Checked before allocating, so that a corrupt length is a cache miss instead of an enormous allocation.
+            if (positions < 0 || textureCoordinates < 0 || faceStarts < 0 || vertexIndices < 0 || textureIndices < -1 || faceMaterials < -1) return null;
+            long arrayBytes = 4L * ((long) positions + textureCoordinates + faceStarts + vertexIndices + Math.max(textureIndices, 0) + Math.max(faceMaterials, 0));
+            if (position + arrayBytes != channel.size()) return null;
+
+            float[] positionArray = new float[positions];
+            position = readFloats(channel, position, positionArray);
+            float[] textureArray = new float[textureCoordinates];
+            position = readFloats(channel, position, textureArray);
+            int[] faceStartArray = new int[faceStarts];
+            position = readInts(channel, position, faceStartArray);
+            int[] vertexArray = new int[vertexIndices];
+            position = readInts(channel, position, vertexArray);
+            int[] textureIndexArray = textureIndices < 0 ? null : new int[textureIndices];
+            if (textureIndexArray != null) position = readInts(channel, position, textureIndexArray);
+            int[] materialArray = faceMaterials < 0 ? null : new int[faceMaterials];
+            if (materialArray != null) readInts(channel, position, materialArray);
+
+            Mesh mesh = new Mesh(positionArray, textureArray, faceStartArray, vertexArray, textureIndexArray, materialArray);
+            return new Entry(mesh, extra);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the Mesh of a model file to its cache file. Failures are logged and otherwise ignored.
+     * The cache file is written to a temporary file first, so a partially written cache is never read.
+     * @param source The model file.
+     * @param mesh The Mesh parsed from the model file.
+     * @param extra Extra data to store with the Mesh, such as material definitions.
+     * @param dependencies Other files the Mesh was built from, such as an mtl file. They do not need to exist.
+     */
+    public static void write(File source, Mesh mesh, byte[] extra, File... dependencies) {
+        Path cachePath = getCacheFile(source).toPath();
+        Path temporaryPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        try {
+            File[] files = tracked(source, dependencies);
+            ByteBuffer header = ByteBuffer.allocate(12 + files.length * 25 + 4 + extra.length + 24 + 4).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.capacity() > MAX_HEADER_SIZE) return;
+            header.putInt(MAGIC).putInt(VERSION).putInt(files.length);
+            for (File file: files) {
+                boolean exists = file.isFile();
+                header.put((byte) (exists ? 1 : 0));
+                header.putLong(exists ? file.length() : 0);
+                header.putLong(exists ? file.lastModified() : 0);
+                header.putLong(exists ? checksum(file) : 0);
+            }
+            header.putInt(extra.length).put(extra);
+            header.putInt(mesh.positions.length).putInt(mesh.textureCoordinates.length).putInt(mesh.faceStarts.length).putInt(mesh.vertexIndices.length);
+            header.putInt(mesh.textureIndices == null ? -1 : mesh.textureIndices.length);
+            header.putInt(mesh.faceMaterials == null ? -1 : mesh.faceMaterials.length);
+            header.position((int) align(header.position()));
+            header.flip();
+
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) channel.write(header);
+                //Only as large as the largest array, since direct memory is not freed until the buffer is collected.
+                int largest = Math.max(Math.max(mesh.positions.length, mesh.textureCoordinates.length), Math.max(mesh.faceStarts.length, mesh.vertexIndices.length));
+                if (mesh.textureIndices != null) largest = Math.max(largest, mesh.textureIndices.length);
+                if (mesh.faceMaterials != null) largest = Math.max(largest, mesh.faceMaterials.length);
+                ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(WINDOW_SIZE, largest * 4L)).order(ByteOrder.LITTLE_ENDIAN);
+                writeFloats(channel, buffer, mesh.positions);
+                writeFloats(channel, buffer, mesh.textureCoordinates);
+                writeInts(channel, buffer, mesh.faceStarts);
+                writeInts(channel, buffer, mesh.vertexIndices);
+                if (mesh.textureIndices != null) writeInts(channel, buffer, mesh.textureIndices);
+                if (mesh.faceMaterials != null) writeInts(channel, buffer, mesh.faceMaterials);
+            }
+            try {
+                Files.move(temporaryPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Records the new modification time of a source file whose contents did not change.
+     * @param cacheFile The cache file.
+     * @param position The position of the modification time in the cache file.
+     * @param modified The new modification time.
+     */
+    private static void updateModified(File cacheFile, long position, long modified) {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, modified), position);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param source The model file.
+     * @param dependencies Other files the Mesh was built from.
+     * @return An array of the model file followed by its dependencies.
+     */
+    private static File[] tracked(File source, File... dependencies) {
+        File[] files = new File[dependencies.length + 1];
+        files[0] = source;
+        System.arraycopy(dependencies, 0, files, 1, dependencies.length);
+        return files;
+    }
+
+    /**
+     * @param position A position in the cache file.
+     * @return The position rounded up to a multiple of 4.
+     */
+    private static long align(long position) {
+        return (position + 3) & ~3L;
+    }
+
+    /**
+     * @param file A file to checksum.
+     * @return The CRC32C checksum of the contents of the file.
+     * @throws IOException The file could not be read.
+     */
+    private static long checksum(File file) throws IOException {
+        //Read instead of mapped, so the model file is not locked against edits on some platforms.
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) > 0) crc.update(buffer.flip());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Reads little-endian floats from the cache file into an array.
+     * @param channel A channel to the cache file.
+     * @param position The position of the first float in the file.
+     * @param array The array to fill.
+     * @return The position after the last float.
+     * @throws IOException The file could not be read or is too short.
+     */
+    private static long readFloats(FileChannel channel, long position, float[] array) throws IOException {
+        for (int offset = 0; offset < array.length; ) {
+            int count = Math.min(array.length - offset, WINDOW_SIZE / 4);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, count * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(array, offset, count);
+            offset += count;
+            position += count * 4L;
+        }
+        return position;
+    }
+
+    /**
+     * Reads little-endian ints from the cache file into an array.
+     * @param channel A channel to the cache file.
+     * @param position The position of the first int in the file.
+     * @param array The array to fill.
+     * @return The position after the last int.
+     * @throws IOException The file could not be read or is too short.
+     */
+    private static long readInts(FileChannel channel, long position, int[] array) throws IOException {
+        for (int offset = 0; offset < array.length; ) {
+            int count = Math.min(array.length - offset, WINDOW_SIZE / 4);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, count * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(array, offset, count);
+            offset += count;
+            position += count * 4L;
+        }
+        return position;
+    }
+
+    /**
+     * Writes an array to the cache file as little-endian floats.
+     * @param channel A channel to the cache file.
+     * @param buffer A little-endian buffer to stage the floats in.
+     * @param array The floats to write.
+     * @throws IOException The file could not be written.
+     */
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] array) throws IOException {
+        for (int offset = 0; offset < array.length; ) {
+            int count = Math.min(array.length - offset, buffer.capacity() / 4);
+            buffer.clear();
+            buffer.asFloatBuffer().put(array, offset, count);
+            buffer.limit(count * 4);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            offset += count;
+        }
+    }
+
+    /**
+     * Writes an array to the cache file as little-endian ints.
+     * @param channel A channel to the cache file.
+     * @param buffer A little-endian buffer to stage the ints in.
+     * @param array The ints to write.
+     * @throws IOException The file could not be written.
+     */
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] array) throws IOException {
+        for (int offset = 0; offset < array.length; ) {
+            int count = Math.min(array.length - offset, buffer.capacity() / 4);
+            buffer.clear();
+            buffer.asIntBuffer().put(array, offset, count);
+            buffer.limit(count * 4);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            offset += count;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.knkevin.model_tools.models.utils;
 
 import com.knkevin.model_tools.models.ObjModel;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
@@ -9,12 +10,20 @@ import net.minecraftforge.registries.ForgeRegistries;
 import org.joml.Vector4i;
 
 import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.jar.JarFile;
+import java.util.stream.IntStream;
 
 /**
- * A class for creating a quantized palette and writing it to a file.
+ * A class for matching colors to blocks, and for creating the palette files it loads.
+ * Colors are matched either through a quantized palette, or by the nearest average block color in OKLab.
+ * Only the quantized palette is bundled, since block colors are read from textures, which dedicated servers do not have.
+ * So OKLab matching is only used by clients, once the palette has been rebuilt from their resource packs.
  */
 public class Palette {
 	/**
@@ -23,102 +32,360 @@ public class Palette {
 	private static final int base = 20;
 
 	/**
-	 * A Map of colors as Integers mapped to block names.
+	 * The number of quantized values of each color channel.
 	 */
-	private static final Map<Integer, String> palette = new HashMap<>();
+	private static final int levels = 255 / base + 1;
 
 	/**
 	 * The text file to write and read the palette as text.
 	 */
 	public static final String fileName = "palette.txt";
 
+	/**
+	 * The binary file in the working directory that caches the average color of each block between palette generations.
+	 * It is not bundled with the mod, since it is only read when generating the palette text file.
+	 */
+	private static final String blockColorsFileName = "block_colors.bin";
+
+	/**
+	 * Identifies a block colors file.
+	 */
+	private static final int MAGIC = 0x4D54424C;
+
+	/**
+	 * Incremented whenever the layout of block colors files changes.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * How colors are matched to blocks. Replaced as a whole, so a lookup never sees a partially built Table.
+	 * @param redOffsets The offset into cells of each red value.
+	 * @param greenOffsets The offset into cells of each green value.
+	 * @param blueOffsets The offset into cells of each blue value.
+	 * @param cells The block of each cell of the color cube, or null if every color is matched exactly through the tree.
+	 * @param tree The block colors in OKLab, or null if the Table was built from the quantized palette.
+	 * @param blocks The block of each point of the tree.
+	 */
+	private record Table(int[] redOffsets, int[] greenOffsets, int[] blueOffsets, BlockState[] cells, ColorTree tree, BlockState[] blocks) {}
+
+	/**
+	 * The Table used to match colors, or null before a palette is loaded.
+	 * Blocks are resolved once when the palette is loaded, so matching a color does not touch the block registry.
+	 */
+	private static volatile Table table;
+
+	/**
+	 * Reads block colors from the loaded resource packs, so that resource reloads are not slowed down.
+	 */
+	private static final ExecutorService RESOURCE_WORKER = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Model Tools Palette");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The latest rebuild of the palette from resource packs. Replaced and cancelled by every newer rebuild.
+	 */
+	private static final AtomicReference<LoadProgress> resourceRebuild = new AtomicReference<>();
+
+	/**
+	 * The OKLab components of the color being matched by each thread, so that exact matching does not allocate per lookup.
+	 */
+	private static final ThreadLocal<float[]> lab = ThreadLocal.withInitial(() -> new float[3]);
+
 	/**
 	 * @param color The color to match.
-	 * @return The nearest block to that color using the quantized palette.
+	 * @return The nearest block to that color using the loaded palette.
 	 */
 	public static BlockState getNearestBlock(int color) {
-		int red = Math.min(255 - 255 % base, ((color >> 16 & 0xFF) + base/2) / base * base);
-		int green = Math.min(255 - 255 % base, ((color >> 8 & 0xFF) + base/2) / base * base);
-		int blue = Math.min(255 - 255 % base, ((color & 0xFF) + base/2) / base * base);
 		if ((color >> 24 & 0xFF) != 255) return Blocks.AIR.defaultBlockState();
-		int newColor = (255 << 24) | (red << 16) | (green << 8) | blue;
-		String blockName = palette.getOrDefault(newColor, ObjModel.DEFAULT_MATERIAL);
-		Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockName));
-		if (block == null) return Blocks.STONE.defaultBlockState();
-		return block.defaultBlockState();
+		Table current = table;
+		if (current == null) current = table = createQuantizedTable(new String[levels * levels * levels]);
+		if (current.cells == null) {
+			float[] components = lab.get();
+			VectorColors.toOkLab(color, components);
+			return current.blocks[current.tree.nearest(components[0], components[1], components[2])];
+		}
+		return current.cells[current.redOffsets[color >> 16 & 0xFF] + current.greenOffsets[color >> 8 & 0xFF] + current.blueOffsets[color & 0xFF]];
+	}
+
+	/**
+	 * @param red The level of the red channel.
+	 * @param green The level of the green channel.
+	 * @param blue The level of the blue channel.
+	 * @return The index of the quantized color in the quantized palette.
+	 */
+	private static int quantizedIndex(int red, int green, int blue) {
+		return (red * levels + green) * levels + blue;
+	}
+
+	/**
+	 * @param blockName The name of a block.
+	 * @param resolved The blocks already looked up, which the block is added to.
+	 * @return The default state of the block, or stone if there is no such block.
+	 */
+	private static BlockState resolveBlock(String blockName, Map<String, BlockState> resolved) {
+		return resolved.computeIfAbsent(blockName, name -> {
+			Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(name));
+			if (block == null) return Blocks.STONE.defaultBlockState();
+			return block.defaultBlockState();
+		});
+	}
+
+	/**
+	 * Creates a Table that rounds each channel to the nearest multiple of base and looks up the quantized palette.
+	 * @param blockNames The name of the block of each quantized color, or null for colors missing from the palette.
+	 * @return The Table.
+	 */
+	private static Table createQuantizedTable(String[] blockNames) {
+		int[] redOffsets = new int[256], greenOffsets = new int[256], blueOffsets = new int[256];
+		for (int value = 0; value < 256; ++value) {
+			int level = Math.min(levels - 1, (value + base/2) / base);
+			redOffsets[value] = quantizedIndex(level, 0, 0);
+			greenOffsets[value] = quantizedIndex(0, level, 0);
+			blueOffsets[value] = quantizedIndex(0, 0, level);
+		}
+		Map<String, BlockState> resolved = new HashMap<>();
+		BlockState[] cells = new BlockState[blockNames.length];
+		for (int i = 0; i < blockNames.length; ++i)
+			cells[i] = resolveBlock(blockNames[i] != null ? blockNames[i] : ObjModel.DEFAULT_MATERIAL, resolved);
+		return new Table(redOffsets, greenOffsets, blueOffsets, cells, null, null);
+	}
+
+	/**
+	 * Creates a Table that matches colors to the block with the nearest average color in OKLab.
+	 * At a resolution of 0, every color is matched exactly through a k-d tree.
+	 * Otherwise, the color cube is split into 2^resolution cells per channel, and the center of each cell is matched once.
+	 * @param blockColors A Map of block names to their average colors. Must not be empty.
+	 * @param resolution The number of bits per channel of the cells, from 0 to 7.
+	 * @return The Table.
+	 */
+	private static Table createPerceptualTable(Map<String, Integer> blockColors, int resolution) {
+		Map<String, BlockState> resolved = new HashMap<>();
+		BlockState[] blocks = new BlockState[blockColors.size()];
+		float[] coordinates = new float[blockColors.size() * 3], lab = new float[3];
+		int count = 0;
+		for (Map.Entry<String, Integer> entry: blockColors.entrySet()) {
+			blocks[count] = resolveBlock(entry.getKey(), resolved);
+			VectorColors.toOkLab(entry.getValue(), lab);
+			System.arraycopy(lab, 0, coordinates, count++ * 3, 3);
+		}
+		ColorTree tree = new ColorTree(coordinates);
+		if (resolution == 0) return new Table(null, null, null, null, tree, blocks);
+
+		int shift = 8 - resolution;
+		int[] redOffsets = new int[256], greenOffsets = new int[256], blueOffsets = new int[256];
+		for (int value = 0; value < 256; ++value) {
+			redOffsets[value] = value >> shift << (resolution * 2);
+			greenOffsets[value] = value >> shift << resolution;
+			blueOffsets[value] = value >> shift;
+		}
+		//Match the center of each cell, one red slice per task.
+		BlockState[] cells = new BlockState[1 << (resolution * 3)];
+		float half = ((1 << shift) - 1) / 2f;
+		IntStream.range(0, 1 << resolution).parallel().forEach(red -> {
+			float[] cellLab = new float[3];
+			for (int green = 0; green < 1 << resolution; ++green) {
+				for (int blue = 0; blue < 1 << resolution; ++blue) {
+					VectorColors.toOkLab((red << shift) + half, (green << shift) + half, (blue << shift) + half, cellLab);
+					cells[redOffsets[red << shift] + greenOffsets[green << shift] + blueOffsets[blue << shift]] = blocks[tree.nearest(cellLab[0], cellLab[1], cellLab[2])];
+				}
+			}
+		});
+		return new Table(redOffsets, greenOffsets, blueOffsets, cells, tree, blocks);
+	}
+
+	/**
+	 * Reads a text file of colors and block names, one pair per line.
+	 * @param path The path to the file within this mod's jar file.
+	 * @return Each color and block name in the file, or null if there is no such file.
+	 * @throws IOException The file could not be read.
+	 */
+	private static List<Map.Entry<Integer, String>> readText(String path) throws IOException {
+		InputStream inputStream = Palette.class.getClassLoader().getResourceAsStream("assets/model_tools/" + path);
+		if (inputStream == null) return null;
+		List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (line.isBlank()) continue;
+				String[] tokens = line.strip().split(" ");
+				entries.add(Map.entry(Integer.parseInt(tokens[0]), tokens[1]));
+			}
+		} return entries;
 	}
 
 	/**
-	 * Populates the palette Map with entries from a text file.
+	 * Replaces the palette with a quantized palette from a text file.
 	 * The text file should be placed in assets/model_tools.
+	 * Must be called after blocks are registered, since every block is resolved here.
 	 * @param path The path to the file within this mod's jar file.
 	 */
 	public static void loadPaletteFromText(String path) {
+		String[] blockNames = new String[levels * levels * levels];
 		try {
-			InputStream inputStream = Palette.class.getClassLoader().getResourceAsStream("assets/model_tools/" + path);
-			if (inputStream == null) return;
-			BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-				int color = Integer.parseInt(line.strip().split(" ")[0]);
-				String block = line.strip().split(" ")[1];
-				palette.put(color, block);
+			List<Map.Entry<Integer, String>> entries = readText(path);
+			if (entries != null) {
+				for (Map.Entry<Integer, String> entry: entries) {
+					int color = entry.getKey();
+					blockNames[quantizedIndex((color >> 16 & 0xFF) / base, (color >> 8 & 0xFF) / base, (color & 0xFF) / base)] = entry.getValue();
+				}
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		table = createQuantizedTable(blockNames);
+	}
+
+	/**
+	 * Rebuilds the palette from the textures of the loaded resource packs in the background, then replaces the palette in a single write.
+	 * The current palette is used until then. A rebuild that is overtaken by a newer one is cancelled and discarded, along with any error it ran into.
+	 * @param resourceManager The resources of the loaded resource packs.
+	 * @param resolution The number of bits per channel of the table of matched colors, or 0 to match every color exactly.
+	 */
+	public static void rebuildFromResources(ResourceManager resourceManager, int resolution) {
+		LoadProgress rebuild = new LoadProgress(0);
+		LoadProgress previous = resourceRebuild.getAndSet(rebuild);
+		if (previous != null) previous.cancel();
+		RESOURCE_WORKER.execute(() -> {
+			if (resourceRebuild.get() != rebuild) return;
+			try {
+				Map<String, Integer> blockColors = BlockColors.getBlockColors(resourceManager, rebuild);
+				if (blockColors.isEmpty()) return;
+				Table rebuilt = createPerceptualTable(blockColors, resolution);
+				if (resourceRebuild.get() == rebuild) table = rebuilt;
+			} catch (CancellationException ignored) {
+			} catch (IOException | RuntimeException e) {
+				//A newer reload may have closed the resource packs mid-scan, so only failures of the latest rebuild are reported.
+				if (resourceRebuild.get() == rebuild) e.printStackTrace();
+			}
+		});
 	}
 
 	/**
 	 * Creates a quantized palette and writes it to a text file.
+	 * The bundled palette is regenerated by writing it to the working directory, then copying it to assets/model_tools.
 	 * @param file A File to a Minecraft jar file.
 	 */
 	public static void paletteToText(File file) {
 		try {
-			Map<String, Integer> blockColors = BlockColors.getBlockColors(new JarFile(file));
-			Map<Integer, String> quantizedPalette = createQuantizedPalette(blockColors);
-			FileWriter fileWriter = new FileWriter(fileName);
-			for (Map.Entry<Integer, String> entry: quantizedPalette.entrySet()) {
-				String block = entry.getValue();
-				int color = entry.getKey();
-				fileWriter.write(color + " " + block + "\n");
-			} fileWriter.close();
+			Map<Integer, String> quantizedPalette = createQuantizedPalette(getBlockColors(file));
+			try (FileWriter fileWriter = new FileWriter(fileName)) {
+				for (Map.Entry<Integer, String> entry: quantizedPalette.entrySet()) {
+					String block = entry.getValue();
+					int color = entry.getKey();
+					fileWriter.write(color + " " + block + "\n");
+				}
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * @param blockColors A Map of block names to their average colors.
-	 * @return A Map of quantized colors mapped to their corresponding nearest colored blocks.
+	 * The contents of a block colors file.
+	 * @param gameVersion The game version of the jar file the colors were read from.
+	 * @param sourceSize The size in bytes of the jar file the colors were read from.
+	 * @param colors A Map of block names to their average colors.
 	 */
-	private static Map<Integer, String> createQuantizedPalette(Map<String, Integer> blockColors) {
-		Map<Integer, String> quantizedPalette = new HashMap<>();
-		for (int r = 0; r <= 256; r += base) {
-			for (int g = 0; g <= 256; g += base) {
-				for (int b = 0; b <= 256; b += base) {
-					Vector4i ARGB = new Vector4i(255, r, g, b);
-					String nearestBlock = nearestBlock(blockColors, ARGB);
-					quantizedPalette.put(VectorColors.ARGBToInt(ARGB), nearestBlock);
+	private record BlockColorsFile(String gameVersion, long sourceSize, Map<String, Integer> colors) {}
+
+	/**
+	 * Reads the average block colors of a Minecraft jar file, from the block colors file in the working directory if it was written for the same jar file.
+	 * Otherwise, the jar file is read and the block colors file is replaced, so regenerating palettes for the same jar file skips reading it.
+	 * @param file A File to a Minecraft jar file.
+	 * @return A Map of block names to their average colors.
+	 * @throws IOException The jar file could not be read, or the block colors file could not be written.
+	 */
+	private static Map<String, Integer> getBlockColors(File file) throws IOException {
+		try (JarFile jarFile = new JarFile(file)) {
+			String gameVersion = BlockColors.getGameVersion(jarFile);
+			File cacheFile = new File(blockColorsFileName);
+			if (cacheFile.isFile()) {
+				try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+					BlockColorsFile cached = readBlockColors(input);
+					if (cached != null && cached.gameVersion.equals(gameVersion) && cached.sourceSize == file.length()) return cached.colors;
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 			}
-		} return quantizedPalette;
+			Map<String, Integer> blockColors = BlockColors.getBlockColors(jarFile);
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+				writeBlockColors(output, new BlockColorsFile(gameVersion, file.length(), blockColors));
+			} return blockColors;
+		}
+	}
+
+	/**
+	 * Reads a block colors file: a header identifying the format and the source jar file, followed by each block name and its color.
+	 * @param input The contents of the file.
+	 * @return The block colors, or null if the file is not a block colors file of the current version.
+	 * @throws IOException The file could not be read.
+	 */
+	private static BlockColorsFile readBlockColors(DataInputStream input) throws IOException {
+		if (input.readInt() != MAGIC || input.readInt() != VERSION) return null;
+		String gameVersion = input.readUTF();
+		long sourceSize = input.readLong();
+		int count = input.readInt();
+		Map<String, Integer> colors = new HashMap<>();
+		for (int i = 0; i < count; ++i) {
+			String blockName = input.readUTF();
+			colors.put(blockName, input.readInt());
+		} return new BlockColorsFile(gameVersion, sourceSize, colors);
+	}
+
+	/**
+	 * Writes a block colors file, with blocks sorted by name so the file only changes when the colors do.
+	 * @param output The stream to write the file to.
+	 * @param blockColors The block colors.
+	 * @throws IOException The file could not be written.
+	 */
+	private static void writeBlockColors(DataOutputStream output, BlockColorsFile blockColors) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeUTF(blockColors.gameVersion);
+		output.writeLong(blockColors.sourceSize);
+		output.writeInt(blockColors.colors.size());
+		for (Map.Entry<String, Integer> entry: new TreeMap<>(blockColors.colors).entrySet()) {
+			output.writeUTF(entry.getKey());
+			output.writeInt(entry.getValue());
+		}
 	}
 
 	/**
+	 * Matches every quantized color in parallel.
 	 * @param blockColors A Map of block names to their average colors.
-	 * @param color The color to match.
+	 * @return A Map of quantized colors mapped to their corresponding nearest colored blocks.
+	 */
+	private static Map<Integer, String> createQuantizedPalette(Map<String, Integer> blockColors) {
+		String[] blockNames = blockColors.keySet().toArray(new String[0]);
+		int[] colors = new int[blockNames.length];
+		for (int i = 0; i < blockNames.length; ++i) colors[i] = blockColors.get(blockNames[i]);
+		Map<Integer, String> quantizedPalette = new ConcurrentHashMap<>();
+		IntStream.range(0, levels * levels * levels).parallel().forEach(i -> {
+			int r = i / (levels * levels) * base, g = i / levels % levels * base, b = i % levels * base;
+			quantizedPalette.put((255 << 24) | (r << 16) | (g << 8) | b, nearestBlock(blockNames, colors, r, g, b));
+		});
+		return quantizedPalette;
+	}
+
+	/**
+	 * @param blockNames The names of the blocks.
+	 * @param colors The average color of each block.
+	 * @param red The red channel of the color to match.
+	 * @param green The green channel of the color to match.
+	 * @param blue The blue channel of the color to match.
 	 * @return The name of the block with the closest color to the given color.
+	 * @see VectorColors#colorSquaredDistance(Vector4i, Vector4i)
 	 */
-	private static String nearestBlock(Map<String, Integer> blockColors, Vector4i color) {
+	private static String nearestBlock(String[] blockNames, int[] colors, int red, int green, int blue) {
 		String nearestBlock = ObjModel.DEFAULT_MATERIAL;
-		double nearestDistance = Double.MAX_VALUE, currentDistance;
-		for (Map.Entry<String, Integer> entry: blockColors.entrySet()) {
-			Vector4i color2 = VectorColors.intToARGB(entry.getValue());
-			currentDistance = VectorColors.colorSquaredDistance(color, color2);
+		float nearestDistance = Float.MAX_VALUE;
+		for (int i = 0; i < blockNames.length; ++i) {
+			float dr = red - (colors[i] >> 16 & 0xFF), dg = green - (colors[i] >> 8 & 0xFF), db = blue - (colors[i] & 0xFF);
+			float currentDistance = dr * dr * .3f + dg * dg * .59f + db * db * .11f;
 			if (currentDistance > nearestDistance) continue;
 			nearestDistance = currentDistance;
-			nearestBlock = entry.getKey();
+			nearestBlock = blockNames[i];
 		} return nearestBlock;
 	}
-
 }
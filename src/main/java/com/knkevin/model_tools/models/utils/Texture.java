@@ -0,0 +1,84 @@
+package com.knkevin.model_tools.models.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A decoded texture, stored as packed ARGB pixels so that sampling is a direct array index.
+ * Texture coordinates wrap around, and v increases upwards as in obj files.
+ */
+public class Texture {
+    /**
+     * The width of this Texture in pixels.
+     */
+    public final int width;
+
+    /**
+     * The height of this Texture in pixels.
+     */
+    public final int height;
+
+    /**
+     * The ARGB color of each pixel, row by row from the top.
+     */
+    private final int[] pixels;
+
+    /**
+     * Converts every pixel of an image to ARGB at once.
+     * @param image The decoded image.
+     */
+    public Texture(BufferedImage image) {
+        width = image.getWidth();
+        height = image.getHeight();
+        pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    /**
+     * @return The number of bytes held by the pixels of this Texture.
+     */
+    public long byteSize() {
+        return pixels.length * 4L;
+    }
+
+    /**
+     * @param u A number 0-1 representing the horizontal position in the texture.
+     * @param v A number 0-1 representing the vertical position in the texture.
+     * @return The color of the pixel at the location as an integer.
+     */
+    public int sample(float u, float v) {
+        int tx = wrap((int) (u * width) - 1, width);
+        int ty = wrap((int) ((1 - v) * height) - 1, height);
+        return pixels[ty * width + tx];
+    }
+
+    /**
+     * Blends the four pixels around a location, weighted by their distance to it.
+     * Pixels are centered where sample switches between them, so both methods agree at pixel centers.
+     * @param u A number 0-1 representing the horizontal position in the texture.
+     * @param v A number 0-1 representing the vertical position in the texture.
+     * @return The blended color at the location as an integer.
+     */
+    public int sampleBilinear(float u, float v) {
+        float x = u * width - 1.5f, y = (1 - v) * height - 1.5f;
+        int x0 = (int) Math.floor(x), y0 = (int) Math.floor(y);
+        float fx = x - x0, fy = y - y0;
+        int left = wrap(x0, width), right = wrap(x0 + 1, width);
+        int top = wrap(y0, height) * width, bottom = wrap(y0 + 1, height) * width;
+        int topLeft = pixels[top + left], topRight = pixels[top + right];
+        int bottomLeft = pixels[bottom + left], bottomRight = pixels[bottom + right];
+        int color = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            float upper = (topLeft >>> shift & 0xFF) * (1 - fx) + (topRight >>> shift & 0xFF) * fx;
+            float lower = (bottomLeft >>> shift & 0xFF) * (1 - fx) + (bottomRight >>> shift & 0xFF) * fx;
+            color |= Math.round(upper * (1 - fy) + lower * fy) << shift;
+        } return color;
+    }
+
+    /**
+     * @param coordinate A pixel coordinate, possibly outside the texture.
+     * @param size The size of the texture along the coordinate.
+     * @return The coordinate wrapped into the texture.
+     */
+    private static int wrap(int coordinate, int size) {
+        return (coordinate % size + size) % size;
+    }
+}
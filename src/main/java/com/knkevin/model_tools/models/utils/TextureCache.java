@@ -0,0 +1,83 @@
+package com.knkevin.model_tools.models.utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps decoded Textures in memory, so that placing the same textured model again does not decode its textures again.
+ * Textures are keyed by their file path, and decoded again once the file is modified.
+ * The least recently used Textures are evicted once the pixels of all cached Textures exceed the memory budget.
+ */
+public class TextureCache {
+    /**
+     * A cached Texture, along with the state of its file when it was decoded.
+     * @param texture The decoded Texture.
+     * @param modified The modification time of the file.
+     * @param length The size of the file in bytes.
+     */
+    private record Entry(Texture texture, long modified, long length) {}
+
+    /**
+     * The cached Textures by absolute file path, in least recently used order.
+     */
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, .75f, true);
+
+    /**
+     * The number of bytes held by the pixels of all cached Textures.
+     */
+    private static long cachedBytes;
+
+    /**
+     * Returns the cached Texture of a file, decoding it first if it is not cached or if the file changed.
+     * Textures larger than the whole budget are decoded but not cached.
+     * @param file A file to the texture to be opened. May be null.
+     * @param budget The maximum number of bytes held by the pixels of all cached Textures.
+     * @return The Texture if opened successfully, null otherwise.
+     */
+    public static Texture get(File file, long budget) {
+        if (file == null) return null;
+        String path = file.getAbsolutePath();
+        long modified = file.lastModified(), length = file.length();
+        synchronized (entries) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.modified == modified && entry.length == length) return entry.texture;
+        }
+
+        //Decoded outside the lock, so that textures of different materials are decoded in parallel.
+        Texture texture;
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) return null;
+            texture = new Texture(image);
+        } catch (Exception e) {
+            return null;
+        }
+
+        synchronized (entries) {
+            Entry previous = entries.remove(path);
+            if (previous != null) cachedBytes -= previous.texture.byteSize();
+            if (texture.byteSize() <= budget) {
+                entries.put(path, new Entry(texture, modified, length));
+                cachedBytes += texture.byteSize();
+            }
+            evict(budget);
+        } return texture;
+    }
+
+    /**
+     * Removes the least recently used Textures until the cached Textures fit in the budget.
+     * @param budget The maximum number of bytes held by the pixels of all cached Textures.
+     */
+    private static void evict(long budget) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (cachedBytes > budget && iterator.hasNext()) {
+            cachedBytes -= iterator.next().getValue().texture.byteSize();
+            iterator.remove();
+        }
+    }
+
+}
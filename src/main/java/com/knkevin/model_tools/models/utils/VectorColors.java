@@ -4,9 +4,19 @@ import org.joml.Vector3f;
 import org.joml.Vector4i;
 
 /**
- * A class for converting colors between Integers and Vector4i's.
+ * A class for converting colors between Integers and Vector4i's, and from sRGB to OKLab.
  */
 public class VectorColors {
+	/**
+	 * The linear value of each sRGB channel value.
+	 */
+	private static final float[] linearValues = new float[256];
+
+	//Initialize the linear value of each channel value.
+	static {
+		for (int value = 0; value < 256; ++value) linearValues[value] = toLinear(value);
+	}
+
 	/**
 	 * @param color The color as an integer.
 	 * @return The color as a Vector4i in ARGB format.
@@ -37,4 +47,48 @@ public class VectorColors {
 		rgb.mul(rgb).mul(.3f,.59f,.11f);
 		return rgb.x + rgb.y + rgb.z;
 	}
+
+	/**
+	 * Converts an sRGB color to OKLab, where Euclidean distances follow perceived color differences.
+	 * @param color The color as an integer. Alpha is ignored.
+	 * @param lab The array to store the L, a, and b components in.
+	 */
+	public static void toOkLab(int color, float[] lab) {
+		linearToOkLab(linearValues[color >> 16 & 0xFF], linearValues[color >> 8 & 0xFF], linearValues[color & 0xFF], lab);
+	}
+
+	/**
+	 * Converts an sRGB color with fractional channels to OKLab.
+	 * @param red Red, from 0 to 255.
+	 * @param green Green, from 0 to 255.
+	 * @param blue Blue, from 0 to 255.
+	 * @param lab The array to store the L, a, and b components in.
+	 */
+	public static void toOkLab(float red, float green, float blue, float[] lab) {
+		linearToOkLab(toLinear(red), toLinear(green), toLinear(blue), lab);
+	}
+
+	/**
+	 * @param value An sRGB channel value, from 0 to 255.
+	 * @return The linear value of the channel, from 0 to 1.
+	 */
+	private static float toLinear(float value) {
+		float c = value / 255;
+		return c <= .04045f ? c / 12.92f : (float) Math.pow((c + .055) / 1.055, 2.4);
+	}
+
+	/**
+	 * @param r Linear red.
+	 * @param g Linear green.
+	 * @param b Linear blue.
+	 * @param lab The array to store the L, a, and b components in.
+	 */
+	private static void linearToOkLab(float r, float g, float b, float[] lab) {
+		float l = (float) Math.cbrt(.4122214708f * r + .5363325363f * g + .0514459929f * b);
+		float m = (float) Math.cbrt(.2119034982f * r + .6806995451f * g + .1073969566f * b);
+		float s = (float) Math.cbrt(.0883024619f * r + .2817188376f * g + .6299787005f * b);
+		lab[0] = .2104542553f * l + .7936177850f * m - .0040720468f * s;
+		lab[1] = 1.9779984951f * l - 2.4285922050f * m + .4505937099f * s;
+		lab[2] = .0259040371f * l + .7827717662f * m - .8086757660f * s;
+	}
 }
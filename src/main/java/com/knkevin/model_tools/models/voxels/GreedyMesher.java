@@ -0,0 +1,171 @@
+package com.knkevin.model_tools.models.voxels;
+
+import com.knkevin.model_tools.models.utils.IntList;
+
+import java.util.Arrays;
+
+/**
+ * Merges the exposed faces of a VoxelStore into rectangles, so that flat surfaces are drawn with a few large quads instead of one quad per voxel face.
+ * Faces are grouped by direction and by the slice they lie in. Within a slice, adjacent faces in a row are merged into runs,
+ * then runs with the same extent in consecutive rows are merged into rectangles.
+ * Each face direction has its own axes: the slice axis is the normal of the face, and (u, w, normal) is right-handed.
+ * For x faces u and w are y and z, for y faces they are z and x, and for z faces they are x and y.
+ */
+public class GreedyMesher {
+    /**
+     * The bit of each face direction in a face mask, in the order -x, +x, -y, +y, -z, +z.
+     */
+    public static final int[] FACE_BITS = {32, 16, 8, 4, 2, 1};
+
+    /**
+     * The number of bits each coordinate is packed into when sorting faces.
+     */
+    private static final int BITS = 21;
+
+    /**
+     * Added to coordinates before packing, so that packed faces sort in coordinate order.
+     */
+    private static final int BIAS = 1 << (BITS - 1);
+
+    /**
+     * Masks the bits of a single packed coordinate.
+     */
+    private static final long MASK = (1L << BITS) - 1;
+
+    /**
+     * Receives the rectangles of merged faces.
+     */
+    @FunctionalInterface
+    public interface QuadConsumer {
+        /**
+         * @param face The index of the face direction in FACE_BITS.
+         * @param slice The coordinate along the normal of the voxels the faces belong to.
+         * @param u0 The minimum u-coordinate of the voxels covered.
+         * @param w0 The minimum w-coordinate of the voxels covered.
+         * @param u1 The u-coordinate after the last voxel covered.
+         * @param w1 The w-coordinate after the last voxel covered.
+         */
+        void accept(int face, int slice, int u0, int w0, int u1, int w1);
+    }
+
+    /**
+     * Merges every exposed face of a VoxelStore into rectangles.
+     * @param voxels The voxels to mesh. Coordinates must be within 2^20 of 0.
+     * @param consumer Receives each rectangle.
+     */
+    public static void mesh(VoxelStore voxels, QuadConsumer consumer) {
+        long[][] keys = new long[FACE_BITS.length][];
+        int[] counts = new int[FACE_BITS.length];
+        for (int face = 0; face < FACE_BITS.length; ++face) keys[face] = new long[16];
+        voxels.forEach((x, y, z, faces) -> {
+            for (int face = 0; face < FACE_BITS.length; ++face) {
+                if ((faces & FACE_BITS[face]) == 0) continue;
+                if (counts[face] == keys[face].length) keys[face] = Arrays.copyOf(keys[face], keys[face].length * 2);
+                keys[face][counts[face]++] = switch (face >> 1) {
+                    case 0 -> pack(x, z, y);
+                    case 1 -> pack(y, x, z);
+                    default -> pack(z, y, x);
+                };
+            }
+        });
+        for (int face = 0; face < FACE_BITS.length; ++face) {
+            long[] faceKeys = keys[face];
+            keys[face] = null;
+            Arrays.parallelSort(faceKeys, 0, counts[face]);
+            mergeFaces(face, faceKeys, counts[face], consumer);
+        }
+    }
+
+    /**
+     * Merges the sorted faces of a single direction into rectangles.
+     * @param face The index of the face direction in FACE_BITS.
+     * @param keys The packed faces, sorted by slice, then w, then u.
+     * @param count The number of faces.
+     * @param consumer Receives each rectangle.
+     */
+    private static void mergeFaces(int face, long[] keys, int count, QuadConsumer consumer) {
+        //Rectangles that reached the previous row, as u0, u1, w0 triples in increasing u0 order.
+        IntList open = new IntList(), next = new IntList();
+        int slice = 0, lastRow = 0;
+        for (int i = 0; i < count; ) {
+            int s = unpackSlice(keys[i]), w = unpackW(keys[i]);
+            if (open.size() > 0 && (s != slice || w != lastRow + 1)) {
+                close(face, slice, lastRow + 1, open, 0, open.size(), consumer);
+                open.truncate(0);
+            }
+            slice = s;
+            lastRow = w;
+
+            //Walk the runs of this row alongside the open rectangles, extending the ones whose extent matches exactly.
+            int o = 0;
+            next.truncate(0);
+            while (i < count && unpackSlice(keys[i]) == s && unpackW(keys[i]) == w) {
+                int u0 = unpackU(keys[i]), u1 = u0 + 1;
+                while (++i < count && keys[i] == keys[i - 1] + 1) ++u1;
+                while (o < open.size() && open.get(o) < u0) o += 3;
+                if (o < open.size() && open.get(o) == u0 && open.get(o + 1) == u1) {
+                    next.add(u0);
+                    next.add(u1);
+                    next.add(open.get(o + 2));
+                    open.set(o + 1, Integer.MIN_VALUE);
+                } else {
+                    next.add(u0);
+                    next.add(u1);
+                    next.add(w);
+                }
+            }
+            //Rectangles that were not extended end at this row.
+            for (int r = 0; r < open.size(); r += 3)
+                if (open.get(r + 1) != Integer.MIN_VALUE) close(face, slice, w, open, r, r + 3, consumer);
+            IntList swap = open;
+            open = next;
+            next = swap;
+        }
+        close(face, slice, lastRow + 1, open, 0, open.size(), consumer);
+    }
+
+    /**
+     * Sends open rectangles to the consumer.
+     * @param face The index of the face direction in FACE_BITS.
+     * @param slice The slice of the rectangles.
+     * @param w1 The w-coordinate after the last row of the rectangles.
+     * @param open Open rectangles as u0, u1, w0 triples.
+     * @param start The index of the first triple to send.
+     * @param end The index after the last triple to send.
+     * @param consumer Receives each rectangle.
+     */
+    private static void close(int face, int slice, int w1, IntList open, int start, int end, QuadConsumer consumer) {
+        for (int r = start; r < end; r += 3) consumer.accept(face, slice, open.get(r), open.get(r + 2), open.get(r + 1), w1);
+    }
+
+    /**
+     * @return The face packed so that faces sort by slice, then w, then u.
+     */
+    private static long pack(int slice, int w, int u) {
+        return (slice + BIAS & MASK) << (BITS * 2) | (w + BIAS & MASK) << BITS | (u + BIAS & MASK);
+    }
+
+    /**
+     * @param key A packed face.
+     * @return The slice of the face.
+     */
+    private static int unpackSlice(long key) {
+        return (int) (key >>> (BITS * 2)) - BIAS;
+    }
+
+    /**
+     * @param key A packed face.
+     * @return The w-coordinate of the face.
+     */
+    private static int unpackW(long key) {
+        return (int) (key >>> BITS & MASK) - BIAS;
+    }
+
+    /**
+     * @param key A packed face.
+     * @return The u-coordinate of the face.
+     */
+    private static int unpackU(long key) {
+        return (int) (key & MASK) - BIAS;
+    }
+}
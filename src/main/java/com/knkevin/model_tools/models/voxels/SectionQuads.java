@@ -0,0 +1,137 @@
+package com.knkevin.model_tools.models.voxels;
+
+import com.knkevin.model_tools.models.utils.FloatList;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The vertices of the merged quads of a section at every level of detail it can be drawn at.
+ * They are built off of the render thread along with the VoxelSnapshot, so that drawing a section for the first time only uploads them.
+ * Each vertex is its position followed by its texture coordinates, as five floats in native byte order, matching the POSITION_TEX vertex format.
+ * Quads are relative to the position of the Model, and the texture repeats once per block across each quad.
+ */
+public class SectionQuads {
+    /**
+     * The number of bytes of each vertex.
+     */
+    public static final int VERTEX_SIZE = 5 * Float.BYTES;
+
+    /**
+     * The distance faces are moved into their voxels, so that the preview does not z-fight with the world.
+     */
+    private static final float INSET = .0005f;
+
+    /**
+     * The vertices of each level of detail.
+     */
+    private final ByteBuffer[] levels;
+
+    /**
+     * @param levels The vertices of each level of detail.
+     */
+    private SectionQuads(ByteBuffer[] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Merges the exposed faces of a section into quads at every level of detail, from the original voxels up to voxels VoxelSections.SIZE blocks wide.
+     * Coarse voxels already count as levels of detail, so sections of coarse passes have fewer levels.
+     * @param section The voxels to build quads for.
+     * @param voxelSize The side length in blocks of each voxel of the section.
+     * @return The quads of the section.
+     */
+    public static SectionQuads build(VoxelSections.Section section, int voxelSize) {
+        ByteBuffer[] levels = new ByteBuffer[Math.max(0, VoxelSections.MAX_LEVEL - Integer.numberOfTrailingZeros(voxelSize)) + 1];
+        for (int level = 0; level < levels.length; ++level) {
+            int shift = level;
+            FloatList vertices = new FloatList();
+            GreedyMesher.mesh(section.downsample(level), (face, slice, u0, w0, u1, w1) -> addQuad(vertices, shift, voxelSize, face, slice, u0, w0, u1, w1));
+            levels[level] = ByteBuffer.allocate(vertices.size() * Float.BYTES).order(ByteOrder.nativeOrder());
+            levels[level].asFloatBuffer().put(vertices.toArray());
+        }
+        return new SectionQuads(levels);
+    }
+
+    /**
+     * @return The coarsest level of detail these quads were built for.
+     */
+    public int maxLevel() {
+        return levels.length - 1;
+    }
+
+    /**
+     * @param level The level of detail, from 0 to maxLevel().
+     * @return The vertices of the level, four per quad, from position 0 to the limit of the buffer.
+     */
+    public ByteBuffer vertices(int level) {
+        return levels[level].asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param level The level of detail, from 0 to maxLevel().
+     * @return The number of vertices of the level.
+     */
+    public int vertexCount(int level) {
+        return levels[level].capacity() / VERTEX_SIZE;
+    }
+
+    /**
+     * @param voxel The coordinate of a voxel along an axis.
+     * @param voxelSize The side length in blocks of each voxel.
+     * @return The coordinate of the lower boundary of the voxel, since every block is centered on its coordinates.
+     * @see VoxelSnapshot#firstBlock(int, int)
+     */
+    public static float edge(int voxel, int voxelSize) {
+        return VoxelSnapshot.firstBlock(voxel, voxelSize) - .5f;
+    }
+
+    /**
+     * Adds a rectangle of merged faces.
+     * @param vertices The list to add the vertices of the quad to.
+     * @param level The level of detail, where voxel c covers the voxels from c shifted left by the level up to the next voxel.
+     * @param voxelSize The side length in blocks of each voxel before downsampling.
+     * @see GreedyMesher.QuadConsumer#accept(int, int, int, int, int, int)
+     */
+    private static void addQuad(FloatList vertices, int level, int voxelSize, int face, int slice, int u0, int w0, int u1, int w1) {
+        int axis = face >> 1;
+        boolean positive = (face & 1) == 1;
+        float n = positive ? edge((slice + 1) << level, voxelSize) - INSET : edge(slice << level, voxelSize) + INSET;
+        float a0 = edge(u0 << level, voxelSize) + INSET, a1 = edge(u1 << level, voxelSize) - INSET;
+        float b0 = edge(w0 << level, voxelSize) + INSET, b1 = edge(w1 << level, voxelSize) - INSET;
+        int du = VoxelSnapshot.firstBlock(u1 << level, voxelSize) - VoxelSnapshot.firstBlock(u0 << level, voxelSize);
+        int dw = VoxelSnapshot.firstBlock(w1 << level, voxelSize) - VoxelSnapshot.firstBlock(w0 << level, voxelSize);
+        //Counterclockwise around the normal of the face, so the GPU culls it when seen from behind.
+        if (positive) {
+            addVertex(vertices, axis, n, a0, b0, 0, 0);
+            addVertex(vertices, axis, n, a1, b0, du, 0);
+            addVertex(vertices, axis, n, a1, b1, du, dw);
+            addVertex(vertices, axis, n, a0, b1, 0, dw);
+        } else {
+            addVertex(vertices, axis, n, a0, b0, 0, 0);
+            addVertex(vertices, axis, n, a0, b1, 0, dw);
+            addVertex(vertices, axis, n, a1, b1, du, dw);
+            addVertex(vertices, axis, n, a1, b0, du, 0);
+        }
+    }
+
+    /**
+     * Adds a vertex given in the axes of a face direction.
+     * @param vertices The list to add the vertex to.
+     * @param axis The axis of the normal of the face: 0 for x, 1 for y, 2 for z.
+     * @param n The coordinate along the normal.
+     * @param u The u-coordinate.
+     * @param w The w-coordinate.
+     * @param textureU The u texture coordinate.
+     * @param textureV The v texture coordinate.
+     * @see GreedyMesher
+     */
+    private static void addVertex(FloatList vertices, int axis, float n, float u, float w, float textureU, float textureV) {
+        switch (axis) {
+            case 0 -> vertices.add(n, u, w);
+            case 1 -> vertices.add(w, n, u);
+            default -> vertices.add(u, w, n);
+        }
+        vertices.add(textureU, textureV);
+    }
+}
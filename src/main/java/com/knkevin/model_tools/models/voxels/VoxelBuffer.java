@@ -0,0 +1,194 @@
+package com.knkevin.model_tools.models.voxels;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An append-only list of voxels stored in flat primitive arrays, in the order they were produced.
+ * Each fork/join worker of the Voxelizer fills its own VoxelBuffer, so producing voxels needs no synchronization.
+ */
+public class VoxelBuffer implements VoxelSink {
+    /**
+     * The coordinates of each voxel, packed together.
+     */
+    private int[] coordinates;
+
+    /**
+     * The face that produced each voxel.
+     */
+    private int[] faces;
+
+    /**
+     * The texture coordinates of each voxel, packed together. Null if texture coordinates are not kept.
+     */
+    private float[] textureCoordinates;
+
+    /**
+     * The number of voxels in this VoxelBuffer.
+     */
+    private int size;
+
+    /**
+     * @param capacity The initial capacity of this VoxelBuffer.
+     * @param textured Whether to keep the texture coordinates of each voxel.
+     */
+    public VoxelBuffer(int capacity, boolean textured) {
+        capacity = Math.max(capacity, 1);
+        coordinates = new int[capacity * 3];
+        faces = new int[capacity];
+        textureCoordinates = textured ? new float[capacity * 2] : null;
+    }
+
+    /**
+     * Concatenates VoxelBuffers in order.
+     * @param buffers The VoxelBuffers to concatenate. They must all keep texture coordinates, or all not.
+     * @param textured Whether the VoxelBuffers keep texture coordinates.
+     * @return A VoxelBuffer holding the voxels of every buffer, in order.
+     */
+    public static VoxelBuffer concat(List<VoxelBuffer> buffers, boolean textured) {
+        if (buffers.size() == 1) return buffers.get(0);
+        int total = 0;
+        for (VoxelBuffer buffer: buffers) total = Math.addExact(total, buffer.size);
+        VoxelBuffer result = new VoxelBuffer(total, textured);
+        for (VoxelBuffer buffer: buffers) {
+            System.arraycopy(buffer.coordinates, 0, result.coordinates, result.size * 3, buffer.size * 3);
+            System.arraycopy(buffer.faces, 0, result.faces, result.size, buffer.size);
+            if (textured) System.arraycopy(buffer.textureCoordinates, 0, result.textureCoordinates, result.size * 2, buffer.size * 2);
+            result.size += buffer.size;
+        }
+        return result;
+    }
+
+    /**
+     * Appends a voxel to this VoxelBuffer.
+     * @see VoxelSink#accept(int, int, int, int, float, float)
+     */
+    @Override
+    public void accept(int x, int y, int z, int face, float u, float v) {
+        if (size == faces.length) grow();
+        coordinates[size * 3] = x;
+        coordinates[size * 3 + 1] = y;
+        coordinates[size * 3 + 2] = z;
+        faces[size] = face;
+        if (textureCoordinates != null) {
+            textureCoordinates[size * 2] = u;
+            textureCoordinates[size * 2 + 1] = v;
+        }
+        ++size;
+    }
+
+    /**
+     * Sends every voxel in this VoxelBuffer to a sink, in order.
+     * @param sink Receives each voxel.
+     */
+    public void forEach(VoxelSink sink) {
+        for (int i = 0; i < size; ++i) sink.accept(getX(i), getY(i), getZ(i), faces[i], getU(i), getV(i));
+    }
+
+    /**
+     * @return The number of voxels in this VoxelBuffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of a voxel.
+     * @return The x-coordinate of the voxel.
+     */
+    public int getX(int index) {
+        return coordinates[index * 3];
+    }
+
+    /**
+     * @param index The index of a voxel.
+     * @return The y-coordinate of the voxel.
+     */
+    public int getY(int index) {
+        return coordinates[index * 3 + 1];
+    }
+
+    /**
+     * @param index The index of a voxel.
+     * @return The z-coordinate of the voxel.
+     */
+    public int getZ(int index) {
+        return coordinates[index * 3 + 2];
+    }
+
+    /**
+     * @param index The index of a voxel.
+     * @return The index of the face that produced the voxel.
+     */
+    public int getFace(int index) {
+        return faces[index];
+    }
+
+    /**
+     * @param index The index of a voxel.
+     * @return The u texture coordinate of the voxel, or 0 if texture coordinates are not kept.
+     */
+    public float getU(int index) {
+        return textureCoordinates == null ? 0 : textureCoordinates[index * 2];
+    }
+
+    /**
+     * @param index The index of a voxel.
+     * @return The v texture coordinate of the voxel, or 0 if texture coordinates are not kept.
+     */
+    public float getV(int index) {
+        return textureCoordinates == null ? 0 : textureCoordinates[index * 2 + 1];
+    }
+
+    /**
+     * Finds the first voxel at each position. Since the Voxelizer produces voxels in face order, this is the voxel from the lowest face.
+     * @return The indices of the first voxel at each distinct position, in increasing order.
+     */
+    public int[] firstOccurrences() {
+        //Open addressing table of voxel indices, keyed by their coordinates.
+        int[] table = new int[Integer.highestOneBit(Math.max(size, 2) - 1) << 2];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1, count = 0;
+        int[] result = new int[size];
+        for (int i = 0; i < size; ++i) {
+            int slot = hash(getX(i), getY(i), getZ(i)) & mask;
+            while (table[slot] != -1 && !samePosition(table[slot], i)) slot = (slot + 1) & mask;
+            if (table[slot] != -1) continue;
+            table[slot] = i;
+            result[count++] = i;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @param a The index of a voxel.
+     * @param b The index of another voxel.
+     * @return True if both voxels have the same coordinates, false otherwise.
+     */
+    private boolean samePosition(int a, int b) {
+        return getX(a) == getX(b) && getY(a) == getY(b) && getZ(a) == getZ(b);
+    }
+
+    /**
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @param z Z-coordinate.
+     * @return A well mixed hash of the coordinates.
+     */
+    private static int hash(int x, int y, int z) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        h = (h ^ y) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ z) * 0x165667B19E3779F9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Grows the backing arrays of this VoxelBuffer by half.
+     */
+    private void grow() {
+        int capacity = Math.addExact(faces.length, Math.max(faces.length >> 1, 16));
+        coordinates = Arrays.copyOf(coordinates, capacity * 3);
+        faces = Arrays.copyOf(faces, capacity);
+        if (textureCoordinates != null) textureCoordinates = Arrays.copyOf(textureCoordinates, capacity * 2);
+    }
+}
@@ -0,0 +1,143 @@
+package com.knkevin.model_tools.models.voxels;
+
+/**
+ * A dense set of voxels within a bounding box, stored as one bit per cell.
+ * Each row of cells along the x-axis is packed into longs, so exposed faces are found for 64 voxels at a time:
+ * with shifts along the x-axis, and by masking against the neighboring rows along the y and z-axes.
+ */
+public class VoxelGrid implements VoxelStore {
+    /**
+     * The largest number of cells a VoxelGrid can have, including the padding at the end of each row.
+     */
+    public static final long MAX_CELLS = (long) Integer.MAX_VALUE * 64;
+
+    /**
+     * The minimum corner of the bounding box.
+     */
+    private final int minX, minY, minZ;
+
+    /**
+     * The size of the bounding box along each axis.
+     */
+    private final int sizeX, sizeY, sizeZ;
+
+    /**
+     * The number of longs in each row along the x-axis.
+     */
+    private final int wordsPerRow;
+
+    /**
+     * The occupancy bits of every row. Bit i of word k in a row is the cell at x = minX + k * 64 + i.
+     */
+    private final long[] bits;
+
+    /**
+     * The number of voxels in this VoxelGrid.
+     */
+    private int size;
+
+    /**
+     * @param minX The minimum x-coordinate of a voxel.
+     * @param minY The minimum y-coordinate of a voxel.
+     * @param minZ The minimum z-coordinate of a voxel.
+     * @param maxX The maximum x-coordinate of a voxel.
+     * @param maxY The maximum y-coordinate of a voxel.
+     * @param maxZ The maximum z-coordinate of a voxel.
+     * @throws IllegalArgumentException The bounding box has more than MAX_CELLS cells.
+     */
+    public VoxelGrid(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (cellCount(minX, minY, minZ, maxX, maxY, maxZ) > MAX_CELLS) throw new IllegalArgumentException("Bounding box is too large for a VoxelGrid.");
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = maxX - minX + 1;
+        this.sizeY = maxY - minY + 1;
+        this.sizeZ = maxZ - minZ + 1;
+        this.wordsPerRow = (sizeX + 63) >>> 6;
+        this.bits = new long[wordsPerRow * sizeY * sizeZ];
+    }
+
+    /**
+     * @return The number of cells in a VoxelGrid with the given bounds, including the padding at the end of each row.
+     */
+    static long cellCount(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        long words = ((long) maxX - minX + 64) >>> 6;
+        return words * 64 * ((long) maxY - minY + 1) * ((long) maxZ - minZ + 1);
+    }
+
+    /**
+     * Adds a voxel within the bounding box to this VoxelGrid.
+     * @param x X-coordinate of the voxel.
+     * @param y Y-coordinate of the voxel.
+     * @param z Z-coordinate of the voxel.
+     */
+    public void add(int x, int y, int z) {
+        int dx = x - minX;
+        int index = row(y - minY, z - minZ) + (dx >>> 6);
+        long bit = 1L << dx;
+        if ((bits[index] & bit) == 0) {
+            bits[index] |= bit;
+            ++size;
+        }
+    }
+
+    /**
+     * @see VoxelStore#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @see VoxelStore#contains(int, int, int)
+     */
+    @Override
+    public boolean contains(int x, int y, int z) {
+        int dx = x - minX, dy = y - minY, dz = z - minZ;
+        if (dx < 0 || dy < 0 || dz < 0 || dx >= sizeX || dy >= sizeY || dz >= sizeZ) return false;
+        return (bits[row(dy, dz) + (dx >>> 6)] & 1L << dx) != 0;
+    }
+
+    /**
+     * Finds the exposed faces of 64 voxels at a time, then sends each voxel with an exposed face to the consumer.
+     * @see VoxelStore#forEach(Consumer)
+     */
+    @Override
+    public void forEach(Consumer consumer) {
+        int layer = wordsPerRow * sizeY;
+        for (int dz = 0; dz < sizeZ; ++dz) {
+            for (int dy = 0; dy < sizeY; ++dy) {
+                int row = row(dy, dz);
+                for (int k = 0; k < wordsPerRow; ++k) {
+                    long word = bits[row + k];
+                    if (word == 0) continue;
+                    //Neighbors along the x-axis are the adjacent bits, carried across word boundaries.
+                    long previous = k > 0 ? bits[row + k - 1] : 0, next = k < wordsPerRow - 1 ? bits[row + k + 1] : 0;
+                    long minusX = word & ~(word << 1 | previous >>> 63);
+                    long plusX = word & ~(word >>> 1 | next << 63);
+                    //Neighbors along the y and z-axes are the same bits of neighboring rows.
+                    long minusY = dy > 0 ? word & ~bits[row + k - wordsPerRow] : word;
+                    long plusY = dy < sizeY - 1 ? word & ~bits[row + k + wordsPerRow] : word;
+                    long minusZ = dz > 0 ? word & ~bits[row + k - layer] : word;
+                    long plusZ = dz < sizeZ - 1 ? word & ~bits[row + k + layer] : word;
+                    for (long remaining = minusX | plusX | minusY | plusY | minusZ | plusZ; remaining != 0; remaining &= remaining - 1) {
+                        int bit = Long.numberOfTrailingZeros(remaining);
+                        int faces = (int) (minusX >>> bit & 1) << 5 | (int) (plusX >>> bit & 1) << 4 | (int) (minusY >>> bit & 1) << 3
+                                | (int) (plusY >>> bit & 1) << 2 | (int) (minusZ >>> bit & 1) << 1 | (int) (plusZ >>> bit & 1);
+                        consumer.accept(minX + (k << 6) + bit, minY + dy, minZ + dz, (byte) faces);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param dy The y-offset of the row from the minimum corner.
+     * @param dz The z-offset of the row from the minimum corner.
+     * @return The index of the first word of the row.
+     */
+    private int row(int dy, int dz) {
+        return (dz * sizeY + dy) * wordsPerRow;
+    }
+}
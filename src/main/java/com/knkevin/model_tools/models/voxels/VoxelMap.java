@@ -0,0 +1,246 @@
+package com.knkevin.model_tools.models.voxels;
+
+import java.util.Arrays;
+
+/**
+ * A map from voxel coordinates to bytes, using open addressing over primitive arrays.
+ * Coordinates are packed into a single long key, so no objects are created per voxel.
+ * The bits of each byte determine which faces of the voxel are to be rendered: -x=32, +x=16, -y=8, +y=4, -z=2, +z=1.
+ */
+public class VoxelMap implements VoxelStore {
+    /**
+     * All six faces of a voxel.
+     */
+    public static final byte ALL_FACES = 63;
+
+    /**
+     * The number of bits each coordinate is packed into.
+     */
+    private static final int BITS = 21;
+
+    /**
+     * Masks the bits of a single packed coordinate.
+     */
+    private static final long MASK = (1L << BITS) - 1;
+
+    /**
+     * The smallest coordinate that can be packed without aliasing another voxel.
+     */
+    public static final int MIN_COORDINATE = -(1 << (BITS - 1));
+
+    /**
+     * The largest coordinate that can be packed without aliasing another voxel.
+     */
+    public static final int MAX_COORDINATE = (1 << (BITS - 1)) - 1;
+
+    /**
+     * Marks an empty slot. Packed keys never have the sign bit set, so no key is equal to it.
+     */
+    private static final long EMPTY = -1;
+
+    /**
+     * The packed coordinates of the voxel in each slot, or EMPTY.
+     */
+    private long[] keys;
+
+    /**
+     * The value of the voxel in each slot.
+     */
+    private byte[] values;
+
+    /**
+     * The number of voxels in this VoxelMap.
+     */
+    private int size;
+
+    public VoxelMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize The number of voxels this VoxelMap should hold without growing.
+     */
+    public VoxelMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) - 1) << 2;
+        keys = new long[capacity];
+        values = new byte[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @param z Z-coordinate.
+     * @return True if every coordinate is from MIN_COORDINATE to MAX_COORDINATE, so the voxel can be packed.
+     */
+    public static boolean inRange(int x, int y, int z) {
+        return x >= MIN_COORDINATE && x <= MAX_COORDINATE && y >= MIN_COORDINATE && y <= MAX_COORDINATE && z >= MIN_COORDINATE && z <= MAX_COORDINATE;
+    }
+
+    /**
+     * @param x X-coordinate. Must be within 2^20 of 0.
+     * @param y Y-coordinate. Must be within 2^20 of 0.
+     * @param z Z-coordinate. Must be within 2^20 of 0.
+     * @return The coordinates packed into a non-negative long.
+     */
+    public static long pack(int x, int y, int z) {
+        return (x & MASK) << (BITS * 2) | (y & MASK) << BITS | (z & MASK);
+    }
+
+    /**
+     * @param key Packed coordinates.
+     * @return The x-coordinate.
+     */
+    public static int unpackX(long key) {
+        return (int) ((key << (64 - BITS * 3)) >> (64 - BITS));
+    }
+
+    /**
+     * @param key Packed coordinates.
+     * @return The y-coordinate.
+     */
+    public static int unpackY(long key) {
+        return (int) ((key << (64 - BITS * 2)) >> (64 - BITS));
+    }
+
+    /**
+     * @param key Packed coordinates.
+     * @return The z-coordinate.
+     */
+    public static int unpackZ(long key) {
+        return (int) ((key << (64 - BITS)) >> (64 - BITS));
+    }
+
+    /**
+     * Sets the value of a voxel, adding it if it is not in this VoxelMap.
+     * @param x X-coordinate of the voxel.
+     * @param y Y-coordinate of the voxel.
+     * @param z Z-coordinate of the voxel.
+     * @param value The value of the voxel.
+     * @throws IllegalArgumentException A coordinate is outside of MIN_COORDINATE to MAX_COORDINATE.
+     */
+    public void put(int x, int y, int z, byte value) {
+        if (!inRange(x, y, z)) throw new IllegalArgumentException("Voxel out of range: " + x + ", " + y + ", " + z + ".");
+        long key = pack(x, y, z);
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                values[slot] = value;
+                rehash();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * @see VoxelStore#contains(int, int, int)
+     */
+    @Override
+    public boolean contains(int x, int y, int z) {
+        //Voxels out of range are never stored, and their packed keys would alias ones that are.
+        if (!inRange(x, y, z)) return false;
+        return keys[find(pack(x, y, z))] != EMPTY;
+    }
+
+    /**
+     * @param x X-coordinate of the voxel.
+     * @param y Y-coordinate of the voxel.
+     * @param z Z-coordinate of the voxel.
+     * @param defaultValue The value to return if the voxel is not in this VoxelMap.
+     * @return The value of the voxel, or the default value.
+     */
+    public byte getOrDefault(int x, int y, int z, byte defaultValue) {
+        if (!inRange(x, y, z)) return defaultValue;
+        int slot = find(pack(x, y, z));
+        return keys[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    /**
+     * @see VoxelStore#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every voxel from this VoxelMap, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Sends every voxel in this VoxelMap with a non-zero value to a consumer, in no particular order.
+     * The faces of each voxel are its value, so they are only culled after cullAdjacentFaces.
+     * @see VoxelStore#forEach(Consumer)
+     */
+    @Override
+    public void forEach(Consumer consumer) {
+        long[] keys = this.keys;
+        byte[] values = this.values;
+        for (int slot = 0; slot < keys.length; ++slot) {
+            long key = keys[slot];
+            if (key != EMPTY && values[slot] != 0) consumer.accept(unpackX(key), unpackY(key), unpackZ(key), values[slot]);
+        }
+    }
+
+    /**
+     * Clears the bit of every face that touches another voxel in this VoxelMap, so only exposed faces are rendered.
+     */
+    public void cullAdjacentFaces() {
+        for (int slot = 0; slot < keys.length; ++slot) {
+            long key = keys[slot];
+            if (key == EMPTY) continue;
+            int x = unpackX(key), y = unpackY(key), z = unpackZ(key);
+            byte value = values[slot];
+            if (contains(x - 1, y, z)) value &= ~32;
+            if (contains(x + 1, y, z)) value &= ~16;
+            if (contains(x, y - 1, z)) value &= ~8;
+            if (contains(x, y + 1, z)) value &= ~4;
+            if (contains(x, y, z - 1)) value &= ~2;
+            if (contains(x, y, z + 1)) value &= ~1;
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * @param key Packed coordinates.
+     * @return The slot holding the key, or the empty slot where it would be inserted.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of this VoxelMap.
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        byte[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new byte[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < oldKeys.length; ++slot) {
+            if (oldKeys[slot] == EMPTY) continue;
+            int newSlot = find(oldKeys[slot]);
+            keys[newSlot] = oldKeys[slot];
+            values[newSlot] = oldValues[slot];
+        }
+    }
+
+    /**
+     * @param key Packed coordinates.
+     * @return A well mixed hash of the key.
+     */
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,277 @@
+package com.knkevin.model_tools.models.voxels;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The voxels of a VoxelStore split into cubic sections, so that the preview can be meshed, culled and rebuilt one section at a time.
+ * Each section has a fingerprint of its voxels and their faces, so a renderer can tell which sections changed between two snapshots.
+ */
+public class VoxelSections {
+    /**
+     * The base 2 logarithm of the side length of a section.
+     */
+    public static final int SHIFT = 4;
+
+    /**
+     * The side length of a section.
+     */
+    public static final int SIZE = 1 << SHIFT;
+
+    /**
+     * The coarsest level of detail of a section, where the whole section is a single voxel.
+     */
+    public static final int MAX_LEVEL = SHIFT;
+
+    /**
+     * A section of voxels.
+     * @param x The x-coordinate of the section. The section holds the voxels whose x-coordinate shifted right by SHIFT equals it.
+     * @param y The y-coordinate of the section.
+     * @param z The z-coordinate of the section.
+     * @param fingerprint A hash of the voxels of the section and their faces, independent of their order.
+     * @param voxels The voxels of the section, with faces already culled against the voxels of neighboring sections.
+     */
+    public record Section(int x, int y, int z, long fingerprint, VoxelStore voxels) {
+        /**
+         * @return The key of this section.
+         */
+        public long key() {
+            return VoxelMap.pack(x, y, z);
+        }
+
+        /**
+         * Downsamples the voxels of this section, where each voxel of a level covers 2x2x2 voxels of the level below it.
+         * A voxel of a level is occupied if any voxel it covers is occupied, so every level covers at least the voxels of the ones below it.
+         * Faces are only culled against voxels of this section, so faces on the boundary of the section are kept.
+         * This way a neighboring section drawn at a different level can never expose a gap.
+         * @param level The level of detail, from 0 for the original voxels to MAX_LEVEL.
+         * @return The voxels of the level, whose coordinates are the original coordinates shifted right by the level.
+         */
+        public VoxelStore downsample(int level) {
+            if (level == 0) return voxels;
+            VoxelMap map = new VoxelMap(voxels.size() >> (level * 2));
+            voxels.forEach((x, y, z, faces) -> map.put(x >> level, y >> level, z >> level, VoxelMap.ALL_FACES));
+            map.cullAdjacentFaces();
+            return map;
+        }
+    }
+
+    /**
+     * Marks an empty slot. Packed keys never have the sign bit set, so no key is equal to it.
+     */
+    private static final long EMPTY = -1;
+
+    /**
+     * Open addressing table of the packed coordinates of the sections.
+     */
+    private final long[] keys;
+
+    /**
+     * The section of each slot of keys.
+     */
+    private final Section[] slots;
+
+    /**
+     * The sections holding at least one voxel with an exposed face.
+     */
+    private final Section[] sections;
+
+    /**
+     * The quads of the section of each slot of keys, or null if they were not built.
+     */
+    private final SectionQuads[] quads;
+
+    /**
+     * @param builder The builder holding the split voxels. Its table of keys is kept as is.
+     */
+    private VoxelSections(Builder builder) {
+        keys = builder.keys;
+        slots = new Section[keys.length];
+        quads = new SectionQuads[keys.length];
+        sections = new Section[builder.count];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; ++slot) {
+            long key = keys[slot];
+            if (key == EMPTY) continue;
+            slots[slot] = new Section(VoxelMap.unpackX(key), VoxelMap.unpackY(key), VoxelMap.unpackZ(key), builder.fingerprints[slot], builder.maps[slot]);
+            sections[count++] = slots[slot];
+        }
+    }
+
+    /**
+     * Splits the voxels with exposed faces of a VoxelStore into sections.
+     * @param voxels The voxels to split. Must not be modified while being split.
+     * @return The sections of the voxels.
+     */
+    public static VoxelSections of(VoxelStore voxels) {
+        Builder builder = new Builder();
+        voxels.forEach(builder);
+        return new VoxelSections(builder);
+    }
+
+    /**
+     * Splits the voxels with exposed faces of a VoxelStore into sections, and builds the quads of each section for the preview.
+     * Sections whose voxels have not changed since the previous sections keep their quads, so only changed sections are meshed again.
+     * @param voxels The voxels to split. Must not be modified while being split.
+     * @param voxelSize The side length in blocks of each voxel.
+     * @param previous Sections with the same voxel size to reuse quads from. May be null.
+     * @return The sections of the voxels, with their quads.
+     */
+    public static VoxelSections of(VoxelStore voxels, int voxelSize, VoxelSections previous) {
+        VoxelSections sections = of(voxels);
+        for (int slot = 0; slot < sections.slots.length; ++slot) {
+            Section section = sections.slots[slot];
+            if (section == null) continue;
+            SectionQuads reused = previous == null ? null : previous.quads(section);
+            sections.quads[slot] = reused != null ? reused : SectionQuads.build(section, voxelSize);
+        }
+        return sections;
+    }
+
+    /**
+     * @param key The packed coordinates of a section.
+     * @return The section, or null if it holds no voxels with exposed faces.
+     */
+    public Section get(long key) {
+        return slots[find(keys, key)];
+    }
+
+    /**
+     * @param section A section of these or other VoxelSections.
+     * @return The quads of the section, or null if they were not built or these VoxelSections have different voxels at its position.
+     */
+    public SectionQuads quads(Section section) {
+        int slot = find(keys, section.key());
+        return slots[slot] != null && slots[slot].fingerprint() == section.fingerprint() ? quads[slot] : null;
+    }
+
+    /**
+     * @return The sections holding at least one voxel with an exposed face, in no particular order.
+     */
+    public Collection<Section> sections() {
+        return Collections.unmodifiableList(Arrays.asList(sections));
+    }
+
+    /**
+     * @return The number of sections.
+     */
+    public int size() {
+        return sections.length;
+    }
+
+    /**
+     * @param keys An open addressing table of packed coordinates.
+     * @param key Packed coordinates.
+     * @return The slot holding the key, or the empty slot where it would be inserted.
+     */
+    private static int find(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * @param value A value to hash.
+     * @return A well mixed hash of the value.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ value >>> 33;
+    }
+
+    /**
+     * Sorts voxels into the sections they belong to, keeping the voxels and fingerprint of each section in the slot of its key.
+     */
+    private static class Builder implements VoxelStore.Consumer {
+        /**
+         * Open addressing table of the packed coordinates of the sections found so far.
+         */
+        private long[] keys = new long[16];
+
+        /**
+         * The voxels of the section in each slot of keys.
+         */
+        private VoxelMap[] maps = new VoxelMap[16];
+
+        /**
+         * The fingerprint of the section in each slot of keys.
+         */
+        private long[] fingerprints = new long[16];
+
+        /**
+         * The number of sections found so far.
+         */
+        private int count;
+
+        /**
+         * The key of the last section a voxel went to, since VoxelStores often send neighboring voxels one after another.
+         */
+        private long lastKey = EMPTY;
+
+        /**
+         * The slot of the last section a voxel went to.
+         */
+        private int lastSlot;
+
+        private Builder() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * Adds a voxel to its section, creating the section if it is the first voxel in it.
+         * @see VoxelStore.Consumer#accept(int, int, int, byte)
+         */
+        @Override
+        public void accept(int x, int y, int z, byte faces) {
+            long key = VoxelMap.pack(x >> SHIFT, y >> SHIFT, z >> SHIFT);
+            int slot = key == lastKey ? lastSlot : slotOf(key);
+            maps[slot].put(x, y, z, faces);
+            fingerprints[slot] += mix(VoxelMap.pack(x, y, z) << 6 | faces);
+        }
+
+        /**
+         * @param key The packed coordinates of a section.
+         * @return The slot of the section, which is added if it is not in the table yet.
+         */
+        private int slotOf(long key) {
+            int slot = find(keys, key);
+            if (keys[slot] == EMPTY) {
+                if (++count * 2 > keys.length) {
+                    rehash();
+                    slot = find(keys, key);
+                }
+                keys[slot] = key;
+                maps[slot] = new VoxelMap();
+            }
+            lastKey = key;
+            lastSlot = slot;
+            return slot;
+        }
+
+        /**
+         * Doubles the capacity of the table.
+         */
+        private void rehash() {
+            long[] oldKeys = keys;
+            VoxelMap[] oldMaps = maps;
+            long[] oldFingerprints = fingerprints;
+            keys = new long[oldKeys.length * 2];
+            maps = new VoxelMap[keys.length];
+            fingerprints = new long[keys.length];
+            Arrays.fill(keys, EMPTY);
+            for (int slot = 0; slot < oldKeys.length; ++slot) {
+                if (oldKeys[slot] == EMPTY) continue;
+                int newSlot = find(keys, oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                maps[newSlot] = oldMaps[slot];
+                fingerprints[newSlot] = oldFingerprints[slot];
+            }
+            lastKey = EMPTY;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.knkevin.model_tools.models.voxels;
+
+/**
+ * Receives the voxels produced by a Voxelizer.
+ */
+@FunctionalInterface
+public interface VoxelSink {
+    /**
+     * @param x X-coordinate of the voxel.
+     * @param y Y-coordinate of the voxel.
+     * @param z Z-coordinate of the voxel.
+     * @param face The index of the face in the Mesh that produced the voxel.
+     * @param u The u texture coordinate of the face at the voxel.
+     * @param v The v texture coordinate of the face at the voxel.
+     */
+    void accept(int x, int y, int z, int face, float u, float v);
+}
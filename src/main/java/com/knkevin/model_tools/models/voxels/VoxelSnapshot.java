@@ -0,0 +1,50 @@
+package com.knkevin.model_tools.models.voxels;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A complete, immutable version of the voxels of a Model's preview.
+ * The preview worker builds each snapshot off-thread and publishes it whole, so the render thread always draws a consistent set of voxels without locking.
+ * The VoxelStore of a snapshot must never be modified once it is published.
+ * @param epoch Increases with every snapshot created, so the renderer can tell when the preview changed.
+ * @param faces The voxels of the preview along with their exposed faces.
+ * @param sections The same voxels split into sections, for rendering and rebuilding them one section at a time.
+ * @param voxelSize The side length in blocks of each voxel. Greater than 1 for the coarse passes of a progressive update.
+ *                  Voxel c then covers the blocks whose coordinates divided by voxelSize truncate to c.
+ * @see #firstBlock(int, int)
+ */
+public record VoxelSnapshot(long epoch, VoxelStore faces, VoxelSections sections, int voxelSize) {
+    /**
+     * The snapshot of a Model whose preview has not been calculated yet.
+     */
+    public static final VoxelSnapshot EMPTY = new VoxelSnapshot(0, new VoxelMap(), VoxelSections.of(new VoxelMap()), 1);
+
+    /**
+     * The epoch of the latest snapshot created.
+     */
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Finds the blocks covered by a voxel of a coarse pass. Since points are placed by truncating towards zero,
+     * voxel c &gt; 0 covers the blocks from c * voxelSize to (c + 1) * voxelSize - 1, voxel c &lt; 0 the blocks from (c - 1) * voxelSize + 1 to c * voxelSize,
+     * and voxel 0 the blocks from 1 - voxelSize to voxelSize - 1, the same way that block 0 spans (-1, 1).
+     * @param voxel The coordinate of a voxel along an axis.
+     * @param voxelSize The side length in blocks of each voxel.
+     * @return The lowest block covered by the voxel along the axis. Voxel c covers the blocks up to the first block of voxel c + 1.
+     */
+    public static int firstBlock(int voxel, int voxelSize) {
+        return voxel > 0 ? voxel * voxelSize : (voxel - 1) * voxelSize + 1;
+    }
+
+    /**
+     * Splits the voxels into sections and builds the quads of each section, so this should be called off of the render thread.
+     * @param faces The completely built voxels of the preview. Must not be modified afterwards.
+     * @param voxelSize The side length in blocks of each voxel.
+     * @param previous The snapshot shown until now, whose quads are reused for sections that did not change. May be null.
+     * @return A snapshot of the voxels with a new epoch.
+     */
+    public static VoxelSnapshot of(VoxelStore faces, int voxelSize, VoxelSnapshot previous) {
+        VoxelSections reusable = previous != null && previous.voxelSize == voxelSize ? previous.sections : null;
+        return new VoxelSnapshot(EPOCHS.incrementAndGet(), faces, VoxelSections.of(faces, voxelSize, reusable), voxelSize);
+    }
+}
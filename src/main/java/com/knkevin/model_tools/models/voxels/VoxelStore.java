@@ -0,0 +1,78 @@
+package com.knkevin.model_tools.models.voxels;
+
+/**
+ * A set of voxels that knows which faces of each voxel are exposed, for rendering the preview of a Model.
+ * The bits of each face mask are: -x=32, +x=16, -y=8, +y=4, -z=2, +z=1.
+ */
+public interface VoxelStore {
+    /**
+     * Voxel sets that fill at least one in this many cells of their bounding box are stored in a dense VoxelGrid.
+     * At this fill ratio, a bit per cell costs about the same memory as a VoxelMap entry per voxel.
+     */
+    int DENSE_CELLS_PER_VOXEL = 128;
+
+    /**
+     * Receives the voxels of a VoxelStore.
+     */
+    @FunctionalInterface
+    interface Consumer {
+        /**
+         * @param x X-coordinate of the voxel.
+         * @param y Y-coordinate of the voxel.
+         * @param z Z-coordinate of the voxel.
+         * @param faces The mask of faces of the voxel that are not covered by another voxel.
+         */
+        void accept(int x, int y, int z, byte faces);
+    }
+
+    /**
+     * @return The number of voxels in this VoxelStore.
+     */
+    int size();
+
+    /**
+     * @param x X-coordinate of the voxel.
+     * @param y Y-coordinate of the voxel.
+     * @param z Z-coordinate of the voxel.
+     * @return True if the voxel is in this VoxelStore, false otherwise.
+     */
+    boolean contains(int x, int y, int z);
+
+    /**
+     * Sends every voxel in this VoxelStore that has an exposed face to a consumer, along with its exposed faces.
+     * Voxels that are completely covered by other voxels are skipped, since they have nothing to render.
+     * @param consumer Receives each voxel.
+     */
+    void forEach(Consumer consumer);
+
+    /**
+     * Stores the distinct voxels of a VoxelBuffer, densely if they fill enough of their bounding box, or sparsely otherwise.
+     * @param voxels The voxels to store. May contain duplicates.
+     * @return A VoxelGrid or a culled VoxelMap holding the voxels.
+     */
+    static VoxelStore of(VoxelBuffer voxels) {
+        if (voxels.size() == 0) return new VoxelMap();
+        //The density is judged by distinct voxels, since faces that share a voxel would otherwise make sparse sets look dense.
+        int[] unique = voxels.firstOccurrences();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i: unique) {
+            minX = Math.min(minX, voxels.getX(i));
+            minY = Math.min(minY, voxels.getY(i));
+            minZ = Math.min(minZ, voxels.getZ(i));
+            maxX = Math.max(maxX, voxels.getX(i));
+            maxY = Math.max(maxY, voxels.getY(i));
+            maxZ = Math.max(maxZ, voxels.getZ(i));
+        }
+        long cells = VoxelGrid.cellCount(minX, minY, minZ, maxX, maxY, maxZ);
+        if (cells <= VoxelGrid.MAX_CELLS && cells <= (long) unique.length * DENSE_CELLS_PER_VOXEL) {
+            VoxelGrid grid = new VoxelGrid(minX, minY, minZ, maxX, maxY, maxZ);
+            for (int i: unique) grid.add(voxels.getX(i), voxels.getY(i), voxels.getZ(i));
+            return grid;
+        }
+        VoxelMap map = new VoxelMap(unique.length);
+        for (int i: unique) map.put(voxels.getX(i), voxels.getY(i), voxels.getZ(i), VoxelMap.ALL_FACES);
+        map.cullAdjacentFaces();
+        return map;
+    }
+}
@@ -0,0 +1,507 @@
+package com.knkevin.model_tools.models.voxels;
+
+import com.knkevin.model_tools.models.utils.LoadProgress;
+import com.knkevin.model_tools.models.utils.Mesh;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Converts the faces of a Mesh into voxels with integer coordinates.
+ * A point is placed in the voxel at its coordinates truncated towards zero, so voxel 0 spans (-1, 1) along each axis.
+ * A voxel is produced for every unit cube between integer coordinates that a triangle touches, so surfaces are voxelized without gaps.
+ */
+public class Voxelizer {
+    /**
+     * Added to the radius of the cube in every separating axis test, so that rounding cannot open gaps along shared edges.
+     */
+    private static final float EPSILON = 1e-5f;
+
+    /**
+     * Triangles whose smallest angle has a squared sine below this are treated as line segments, since their planes cannot be computed reliably.
+     */
+    private static final float DEGENERATE_SINE_SQUARED = 1e-6f;
+
+    /**
+     * The number of floats stored per transformed corner: x, y, z, u, v.
+     */
+    private static final int STRIDE = 5;
+
+    /**
+     * How a column of cubes relates to a triangle: separated from it, partly covered by its projection, or inside its projection.
+     */
+    private static final int SEPARATED = 0, CROSSING = 1, INSIDE = 2;
+
+    /**
+     * Meshes with at least this many faces are voxelized in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    /**
+     * Ranges of faces are not split any further once they have fewer faces than this.
+     */
+    private static final int MIN_RANGE_SIZE = 1 << 10;
+
+    /**
+     * Voxelizes every face of the Mesh after transforming it, splitting polygons into triangle fans.
+     * @param mesh The Mesh to voxelize.
+     * @param matrix The transformation to apply to each vertex.
+     * @param textured Whether to keep the texture coordinates of each voxel.
+     * @param progress Receives the number of faces voxelized. May be null.
+     * @return The voxels of every face in face order. The same voxel may appear more than once.
+     * @throws java.util.concurrent.CancellationException The load reporting progress was cancelled.
+     */
+    public static VoxelBuffer voxelize(Mesh mesh, Matrix4f matrix, boolean textured, LoadProgress progress) {
+        return voxelize(mesh, mesh.transformPositions(matrix, null), textured, progress);
+    }
+
+    /**
+     * Voxelizes every face of the Mesh using already transformed vertex positions, splitting polygons into triangle fans.
+     * Large Meshes are split into ranges of faces that are voxelized in parallel on the common fork/join pool.
+     * @param mesh The Mesh to voxelize.
+     * @param positions The transformed xyz coordinates of each vertex of the Mesh, packed together.
+     * @param textured Whether to keep the texture coordinates of each voxel.
+     * @param progress Receives the number of faces voxelized. May be null.
+     * @return The voxels of every face in face order. The same voxel may appear more than once.
+     * @throws java.util.concurrent.CancellationException The load reporting progress was cancelled.
+     * @see Mesh#transformPositions(Matrix4f, float[])
+     */
+    public static VoxelBuffer voxelize(Mesh mesh, float[] positions, boolean textured, LoadProgress progress) {
+        int faces = mesh.faceCount();
+        if (progress != null) progress.startVoxelizing(faces);
+        if (faces < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            VoxelBuffer buffer = new VoxelBuffer(faces * 2, textured);
+            voxelizeRange(mesh, positions, 0, faces, textured, buffer, progress);
+            return buffer;
+        }
+        int rangeSize = Math.max(MIN_RANGE_SIZE, faces / (ForkJoinPool.getCommonPoolParallelism() * 8));
+        List<VoxelBuffer> buffers = ForkJoinPool.commonPool().invoke(new RangeTask(mesh, positions, textured, progress, rangeSize, 0, faces));
+        return VoxelBuffer.concat(buffers, textured);
+    }
+
+    /**
+     * Voxelizes a range of faces of the Mesh, splitting polygons into triangle fans.
+     * @param mesh The Mesh to voxelize.
+     * @param positions The transformed xyz coordinates of each vertex of the Mesh, packed together.
+     * @param start The index of the first face to voxelize.
+     * @param end The index after the last face to voxelize.
+     * @param textured Whether the sink keeps texture coordinates. If not, they are not computed.
+     * @param sink Receives each voxel.
+     * @param progress Receives the number of faces voxelized. May be null.
+     * @throws java.util.concurrent.CancellationException The load reporting progress was cancelled.
+     */
+    private static void voxelizeRange(Mesh mesh, float[] positions, int start, int end, boolean textured, VoxelSink sink, LoadProgress progress) {
+        float[] corners = new float[STRIDE * 3];
+        TriangleRasterizer rasterizer = new TriangleRasterizer(textured);
+        for (int face = start; face < end; ++face) {
+            if (progress != null && face > start && (face - start) % LoadProgress.BATCH_SIZE == 0) progress.addVoxelizedFaces(LoadProgress.BATCH_SIZE);
+            int first = mesh.faceStarts[face], last = mesh.faceStarts[face + 1];
+            loadCorner(mesh, positions, first, corners, 0);
+            for (int i = first + 1; i < last - 1; ++i) {
+                loadCorner(mesh, positions, i, corners, STRIDE);
+                loadCorner(mesh, positions, i + 1, corners, STRIDE * 2);
+                rasterizer.rasterize(corners, face, sink);
+            }
+        }
+        if (progress != null && end > start) progress.addVoxelizedFaces((end - start - 1) % LoadProgress.BATCH_SIZE + 1);
+    }
+
+    /**
+     * Stores the transformed position and texture coordinates of a corner of a face.
+     * @param mesh The Mesh the corner belongs to.
+     * @param positions The transformed xyz coordinates of each vertex of the Mesh, packed together.
+     * @param corner The index of the corner.
+     * @param corners The array to store the corner in.
+     * @param offset The index in the array to store the corner at.
+     */
+    private static void loadCorner(Mesh mesh, float[] positions, int corner, float[] corners, int offset) {
+        int xyz = mesh.vertexIndices[corner] * 3;
+        corners[offset] = positions[xyz];
+        corners[offset + 1] = positions[xyz + 1];
+        corners[offset + 2] = positions[xyz + 2];
+        int uv = mesh.textureIndices == null ? -1 : mesh.textureIndices[corner] * 2;
+        corners[offset + 3] = uv < 0 ? 0 : mesh.textureCoordinates[uv];
+        corners[offset + 4] = uv < 0 ? 0 : mesh.textureCoordinates[uv + 1];
+    }
+
+    /**
+     * Finds the voxels touched by a triangle with a separating axis test against each cube.
+     * Only the column of cubes crossed by the triangle's plane is tested, so the work grows with the area of the triangle rather than its volume.
+     * Coordinates are permuted so that d is the axis the plane is most perpendicular to, and u and w are the other two.
+     * Columns that lie completely inside the triangle's projection only hold cubes the plane passes through, so their cubes skip the per-cube test.
+     * The state is kept in fields so that rasterizing a triangle does not allocate.
+     */
+    private static class TriangleRasterizer {
+        /**
+         * Whether texture coordinates are computed for each voxel, or left as 0.
+         */
+        private final boolean textured;
+
+        /**
+         * The axes of the original coordinates that u, w, and d correspond to.
+         */
+        private int uAxis, wAxis, dAxis;
+
+        /**
+         * The permuted positions of the corners. While rasterizing, cube i spans [i, i+1] along each axis.
+         */
+        private float u0, w0, d0, u1, w1, d1, u2, w2, d2;
+
+        /**
+         * The texture coordinates of the corners.
+         */
+        private float tu0, tv0, tu1, tv1, tu2, tv2;
+
+        /**
+         * The permuted components of the three edges.
+         */
+        private final float[] eu = new float[3], ew = new float[3], ed = new float[3];
+
+        /**
+         * The extent of the triangle projected onto, and the radius of a cube along, each of the nine edge cross product axes.
+         * Indexed by edge * 3 + axis, where the axes are the edge crossed with d, u, and w respectively.
+         */
+        private final float[] min = new float[9], max = new float[9], radius = new float[9];
+
+        /**
+         * Terms for computing barycentric coordinates within the triangle.
+         */
+        private float dot00, dot01, dot11, inverseDenominator;
+
+        /**
+         * @param textured Whether texture coordinates are computed for each voxel, or left as 0.
+         */
+        private TriangleRasterizer(boolean textured) {
+            this.textured = textured;
+        }
+
+        /**
+         * Voxelizes a triangle.
+         * @param corners The x, y, z, u, v values of the three corners.
+         * @param face The index of the face the triangle belongs to.
+         * @param sink Receives each voxel touched by the triangle.
+         */
+        private void rasterize(float[] corners, int face, VoxelSink sink) {
+            for (int i = 0; i < STRIDE * 3; ++i) if (!Float.isFinite(corners[i])) return;
+            //Triangles much smaller than a voxel are common in detailed models, and only touch the cube they are in.
+            int x = floor(corners[0]), y = floor(corners[1]), z = floor(corners[2]);
+            if (!textured && x == floor(corners[STRIDE]) && x == floor(corners[STRIDE * 2]) && y == floor(corners[STRIDE + 1]) && y == floor(corners[STRIDE * 2 + 1])
+                    && z == floor(corners[STRIDE + 2]) && z == floor(corners[STRIDE * 2 + 2])) {
+                sink.accept(truncated(x), truncated(y), truncated(z), face, 0, 0);
+                return;
+            }
+            float ex = corners[STRIDE] - corners[0], ey = corners[STRIDE + 1] - corners[1], ez = corners[STRIDE + 2] - corners[2];
+            float fx = corners[STRIDE * 2] - corners[0], fy = corners[STRIDE * 2 + 1] - corners[1], fz = corners[STRIDE * 2 + 2] - corners[2];
+            float nx = Math.abs(ey * fz - ez * fy), ny = Math.abs(ez * fx - ex * fz), nz = Math.abs(ex * fy - ey * fx);
+            if (nx >= ny && nx >= nz) setAxes(1, 2, 0);
+            else if (ny >= nz) setAxes(0, 2, 1);
+            else setAxes(0, 1, 2);
+            load(corners);
+
+            //The normal in permuted coordinates, which is used to find where the plane crosses each column.
+            float nu = ew[0] * (d2 - d0) - ed[0] * (w2 - w0), nw = ed[0] * (u2 - u0) - eu[0] * (d2 - d0), nd = eu[0] * (w2 - w0) - ew[0] * (u2 - u0);
+            float lengthSquared = eu[0] * eu[0] + ew[0] * ew[0] + ed[0] * ed[0], otherLengthSquared = eu[2] * eu[2] + ew[2] * ew[2] + ed[2] * ed[2];
+            if (nu * nu + nw * nw + nd * nd <= DEGENERATE_SINE_SQUARED * lengthSquared * otherLengthSquared) {
+                rasterizeEdges(face, sink);
+                return;
+            }
+            float slopeU = -nu / nd, slopeW = -nw / nd;
+            float lowOffset = Math.min(0, slopeU) + Math.min(0, slopeW), highOffset = Math.max(0, slopeU) + Math.max(0, slopeW);
+            prepareAxes();
+
+            int minU = floor(Math.min(u0, Math.min(u1, u2))), maxU = floor(Math.max(u0, Math.max(u1, u2)));
+            int minW = floor(Math.min(w0, Math.min(w1, w2))), maxW = floor(Math.max(w0, Math.max(w1, w2)));
+            int minD = floor(Math.min(d0, Math.min(d1, d2))), maxD = floor(Math.max(d0, Math.max(d1, d2)));
+            for (int i = minU; i <= maxU; ++i) {
+                float centerU = i + .5f;
+                for (int j = minW; j <= maxW; ++j) {
+                    float centerW = j + .5f;
+                    //Axes perpendicular to d only depend on the column.
+                    int column = classifyColumn(centerU, centerW);
+                    if (column == SEPARATED) continue;
+                    float plane = d0 + slopeU * (i - u0) + slopeW * (j - w0);
+                    int low = Math.max(minD, floor(plane + lowOffset)), high = Math.min(maxD, floor(plane + highOffset));
+                    for (int k = low; k <= high; ++k) {
+                        if (column == INSIDE || !separatedFromCube(centerU, centerW, k + .5f)) emit(i, j, k, face, sink);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param uAxis The original axis that u corresponds to.
+         * @param wAxis The original axis that w corresponds to.
+         * @param dAxis The original axis that d corresponds to.
+         */
+        private void setAxes(int uAxis, int wAxis, int dAxis) {
+            this.uAxis = uAxis;
+            this.wAxis = wAxis;
+            this.dAxis = dAxis;
+        }
+
+        /**
+         * Loads the permuted positions, edges, and texture coordinates of the corners.
+         * @param corners The x, y, z, u, v values of the three corners.
+         */
+        private void load(float[] corners) {
+            u0 = corners[uAxis];
+            w0 = corners[wAxis];
+            d0 = corners[dAxis];
+            u1 = corners[STRIDE + uAxis];
+            w1 = corners[STRIDE + wAxis];
+            d1 = corners[STRIDE + dAxis];
+            u2 = corners[STRIDE * 2 + uAxis];
+            w2 = corners[STRIDE * 2 + wAxis];
+            d2 = corners[STRIDE * 2 + dAxis];
+            tu0 = corners[3];
+            tv0 = corners[4];
+            tu1 = corners[STRIDE + 3];
+            tv1 = corners[STRIDE + 4];
+            tu2 = corners[STRIDE * 2 + 3];
+            tv2 = corners[STRIDE * 2 + 4];
+            eu[0] = u1 - u0; ew[0] = w1 - w0; ed[0] = d1 - d0;
+            eu[1] = u2 - u1; ew[1] = w2 - w1; ed[1] = d2 - d1;
+            eu[2] = u0 - u2; ew[2] = w0 - w2; ed[2] = d0 - d2;
+        }
+
+        /**
+         * Projects the triangle onto each edge cross product axis, and precomputes the terms for barycentric coordinates.
+         */
+        private void prepareAxes() {
+            for (int edge = 0; edge < 3; ++edge) {
+                float a = eu[edge], b = ew[edge], c = ed[edge];
+                project(edge * 3, b * u0 - a * w0, b * u1 - a * w1, b * u2 - a * w2, Math.abs(a) + Math.abs(b));
+                project(edge * 3 + 1, c * w0 - b * d0, c * w1 - b * d1, c * w2 - b * d2, Math.abs(b) + Math.abs(c));
+                project(edge * 3 + 2, a * d0 - c * u0, a * d1 - c * u1, a * d2 - c * u2, Math.abs(a) + Math.abs(c));
+            }
+            float fu = -eu[2], fw = -ew[2], fd = -ed[2];
+            dot00 = eu[0] * eu[0] + ew[0] * ew[0] + ed[0] * ed[0];
+            dot01 = eu[0] * fu + ew[0] * fw + ed[0] * fd;
+            dot11 = fu * fu + fw * fw + fd * fd;
+            inverseDenominator = 1 / (dot00 * dot11 - dot01 * dot01);
+        }
+
+        /**
+         * @param axis The index of the axis.
+         * @param p0 The projection of the first corner.
+         * @param p1 The projection of the second corner.
+         * @param p2 The projection of the third corner.
+         * @param extent The sum of the absolute components of the axis.
+         */
+        private void project(int axis, float p0, float p1, float p2, float extent) {
+            min[axis] = Math.min(p0, Math.min(p1, p2));
+            max[axis] = Math.max(p0, Math.max(p1, p2));
+            radius[axis] = extent * (.5f + EPSILON) + EPSILON;
+        }
+
+        /**
+         * Tests the three axes perpendicular to d, which are the same for every cube in a column.
+         * These are the edge normals of the triangle's projection along d, so a column whose projection onto each of them
+         * lies within the triangle's projection is inside the projected triangle on the inner side of every edge.
+         * Every cube of such a column that the plane passes through then touches the triangle.
+         * @param centerU The u-coordinate of the center of the column.
+         * @param centerW The w-coordinate of the center of the column.
+         * @return SEPARATED if one of the axes separates the triangle from the column, INSIDE if the column is inside the projected triangle, or CROSSING otherwise.
+         */
+        private int classifyColumn(float centerU, float centerW) {
+            int result = INSIDE;
+            for (int edge = 0, axis = 0; edge < 3; ++edge, axis += 3) {
+                float center = ew[edge] * centerU - eu[edge] * centerW;
+                if (min[axis] - center > radius[axis] || max[axis] - center < -radius[axis]) return SEPARATED;
+                if (min[axis] - center > -radius[axis] || max[axis] - center < radius[axis]) result = CROSSING;
+            }
+            return result;
+        }
+
+        /**
+         * Tests the remaining six edge axes against a cube in a column that was not separated.
+         * @param centerU The u-coordinate of the center of the cube.
+         * @param centerW The w-coordinate of the center of the cube.
+         * @param centerD The d-coordinate of the center of the cube.
+         * @return True if one of the axes separates the triangle from the cube, false otherwise.
+         */
+        private boolean separatedFromCube(float centerU, float centerW, float centerD) {
+            for (int edge = 0, axis = 1; edge < 3; ++edge, axis += 3) {
+                float center = ed[edge] * centerW - ew[edge] * centerD;
+                if (min[axis] - center > radius[axis] || max[axis] - center < -radius[axis]) return true;
+                center = eu[edge] * centerD - ed[edge] * centerU;
+                if (min[axis + 1] - center > radius[axis + 1] || max[axis + 1] - center < -radius[axis + 1]) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Sends a voxel to the sink, with the texture coordinates of the closest point of the triangle to its center.
+         * @param i The u-coordinate of the voxel.
+         * @param j The w-coordinate of the voxel.
+         * @param k The d-coordinate of the voxel.
+         * @param face The index of the face the triangle belongs to.
+         * @param sink Receives the voxel.
+         */
+        private void emit(int i, int j, int k, int face, VoxelSink sink) {
+            if (!textured) {
+                send(i, j, k, face, 0, 0, sink);
+                return;
+            }
+            float pu = i + .5f - u0, pw = j + .5f - w0, pd = k + .5f - d0;
+            float dot20 = pu * eu[0] + pw * ew[0] + pd * ed[0];
+            float dot21 = -(pu * eu[2] + pw * ew[2] + pd * ed[2]);
+            float beta = Math.max(0, (dot11 * dot20 - dot01 * dot21) * inverseDenominator);
+            float gamma = Math.max(0, (dot00 * dot21 - dot01 * dot20) * inverseDenominator);
+            float sum = beta + gamma;
+            if (sum > 1) {
+                beta /= sum;
+                gamma /= sum;
+            }
+            send(i, j, k, face, tu0 + (tu1 - tu0) * beta + (tu2 - tu0) * gamma, tv0 + (tv1 - tv0) * beta + (tv2 - tv0) * gamma, sink);
+        }
+
+        /**
+         * Voxelizes a triangle with no area by walking along its edges.
+         * @param face The index of the face the triangle belongs to.
+         * @param sink Receives each voxel the edges pass through.
+         */
+        private void rasterizeEdges(int face, VoxelSink sink) {
+            rasterizeEdge(u0, w0, d0, tu0, tv0, u1, w1, d1, tu1, tv1, face, sink);
+            rasterizeEdge(u1, w1, d1, tu1, tv1, u2, w2, d2, tu2, tv2, face, sink);
+            rasterizeEdge(u2, w2, d2, tu2, tv2, u0, w0, d0, tu0, tv0, face, sink);
+        }
+
+        /**
+         * Walks an edge voxel by voxel, including both endpoints, so that every voxel the edge passes through is visited.
+         * @param face The index of the face the edge belongs to.
+         * @param sink Receives each voxel the edge passes through.
+         */
+        private void rasterizeEdge(float ua, float wa, float da, float tua, float tva, float ub, float wb, float db, float tub, float tvb, int face, VoxelSink sink) {
+            float deltaU = ub - ua, deltaW = wb - wa, deltaD = db - da;
+            int i = floor(ua), j = floor(wa), k = floor(da);
+            int stepI = deltaU < 0 ? -1 : 1, stepJ = deltaW < 0 ? -1 : 1, stepK = deltaD < 0 ? -1 : 1;
+            //The fraction of the edge at which it next crosses a voxel boundary along each axis, and the fraction between crossings.
+            float nextU = crossing(ua, deltaU, i), nextW = crossing(wa, deltaW, j), nextD = crossing(da, deltaD, k);
+            float spanU = 1 / Math.abs(deltaU), spanW = 1 / Math.abs(deltaW), spanD = 1 / Math.abs(deltaD);
+            int steps = Math.abs(floor(ub) - i) + Math.abs(floor(wb) - j) + Math.abs(floor(db) - k);
+            float t = 0;
+            send(i, j, k, face, tua, tva, sink);
+            for (int step = 0; step < steps; ++step) {
+                if (nextU <= nextW && nextU <= nextD) {
+                    i += stepI;
+                    t = nextU;
+                    nextU += spanU;
+                } else if (nextW <= nextD) {
+                    j += stepJ;
+                    t = nextW;
+                    nextW += spanW;
+                } else {
+                    k += stepK;
+                    t = nextD;
+                    nextD += spanD;
+                }
+                t = Math.min(t, 1);
+                send(i, j, k, face, tua + (tub - tua) * t, tva + (tvb - tva) * t, sink);
+            }
+        }
+
+        /**
+         * @param start The coordinate of the start of an edge along an axis.
+         * @param delta The length of the edge along the axis.
+         * @param voxel The voxel containing the start of the edge along the axis.
+         * @return The fraction of the edge at which it first crosses a voxel boundary along the axis, or infinity if it never does.
+         */
+        private static float crossing(float start, float delta, int voxel) {
+            if (delta == 0) return Float.POSITIVE_INFINITY;
+            return (delta > 0 ? voxel + 1 - start : start - voxel) / Math.abs(delta);
+        }
+
+        /**
+         * Sends a cube given in permuted coordinates to the sink as the voxel its points truncate to.
+         * @param i The u-coordinate of the cube.
+         * @param j The w-coordinate of the cube.
+         * @param k The d-coordinate of the cube.
+         * @param face The index of the face the voxel belongs to.
+         * @param u The u texture coordinate at the voxel.
+         * @param v The v texture coordinate at the voxel.
+         * @param sink Receives the voxel.
+         */
+        private void send(int i, int j, int k, int face, float u, float v, VoxelSink sink) {
+            i = truncated(i);
+            j = truncated(j);
+            k = truncated(k);
+            switch (dAxis) {
+                case 0 -> sink.accept(k, i, j, face, u, v);
+                case 1 -> sink.accept(i, k, j, face, u, v);
+                default -> sink.accept(i, j, k, face, u, v);
+            }
+        }
+
+        /**
+         * @param cube The index of a cube spanning [cube, cube+1] along an axis.
+         * @return The coordinate that points inside the cube truncate to.
+         */
+        private static int truncated(int cube) {
+            return cube < 0 ? cube + 1 : cube;
+        }
+
+        /**
+         * @param value A coordinate.
+         * @return The largest integer less than or equal to the coordinate.
+         */
+        private static int floor(float value) {
+            return (int) Math.floor(value);
+        }
+    }
+
+    /**
+     * Recursively splits a range of faces in half, then voxelizes the pieces in parallel into their own VoxelBuffers.
+     */
+    private static class RangeTask extends RecursiveTask<List<VoxelBuffer>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Mesh mesh;
+        private final float[] positions;
+        private final boolean textured;
+        private final LoadProgress progress;
+        private final int rangeSize, start, end;
+
+        /**
+         * @param mesh The Mesh to voxelize.
+         * @param positions The transformed xyz coordinates of each vertex of the Mesh, packed together.
+         * @param textured Whether to keep the texture coordinates of each voxel.
+         * @param progress Receives the number of faces voxelized. May be null.
+         * @param rangeSize The number of faces below which a range is voxelized without splitting.
+         * @param start The index of the first face of the range.
+         * @param end The index after the last face of the range.
+         */
+        private RangeTask(Mesh mesh, float[] positions, boolean textured, LoadProgress progress, int rangeSize, int start, int end) {
+            this.mesh = mesh;
+            this.positions = positions;
+            this.textured = textured;
+            this.progress = progress;
+            this.rangeSize = rangeSize;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return The VoxelBuffers of the pieces of this range in face order.
+         */
+        @Override
+        protected List<VoxelBuffer> compute() {
+            if (end - start <= rangeSize) {
+                VoxelBuffer buffer = new VoxelBuffer((end - start) * 2, textured);
+                voxelizeRange(mesh, positions, start, end, textured, buffer, progress);
+                List<VoxelBuffer> buffers = new ArrayList<>();
+                buffers.add(buffer);
+                return buffers;
+            }
+            int middle = (start + end) >>> 1;
+            RangeTask second = new RangeTask(mesh, positions, textured, progress, rangeSize, middle, end);
+            second.fork();
+            List<VoxelBuffer> buffers = new RangeTask(mesh, positions, textured, progress, rangeSize, start, middle).compute();
+            buffers.addAll(second.join());
+            return buffers;
+        }
+    }
+}
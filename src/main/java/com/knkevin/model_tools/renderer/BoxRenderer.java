@@ -4,20 +4,16 @@ import com.knkevin.model_tools.Main;
 import com.knkevin.model_tools.items.HammerModes;
 import com.knkevin.model_tools.items.ModItems;
 import com.knkevin.model_tools.models.Model;
-import com.knkevin.model_tools.models.utils.Point;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.*;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GameRenderer;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.client.event.RenderLevelStageEvent;
 import org.joml.*;
 
 import java.lang.Math;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 import static com.knkevin.model_tools.items.HammerModes.*;
 
@@ -41,37 +37,139 @@ public class BoxRenderer {
 	private static final Vector3i alpha = new Vector3i();
 
 	/**
-	 * The default texture to be used when rendering the blocks preview of the model.
+	 * The cached quads of the blocks preview of the Model.
 	 */
-	private static final ResourceLocation defaultTexture = new ResourceLocation("textures/block/iron_block.png");
+	private static final PreviewMesh previewMesh = new PreviewMesh();
 
 	/**
-	 * A list of points around a circle
+	 * The uploaded triangles of the Model, drawn while it is being transformed in the MESH view mode.
 	 */
-	private static final List<Vector2f> circlePoints = new ArrayList<>();
+	private static final MeshPreview meshPreview = new MeshPreview();
+
+	/**
+	 * The Model the previews were last drawn for, or null if they hold nothing.
+	 */
+	private static Model renderedModel;
+
+	/**
+	 * The cosine of the angle of each point around a circle.
+	 */
+	private static final float[] circleCos;
+
+	/**
+	 * The sine of the angle of each point around a circle.
+	 */
+	private static final float[] circleSin;
 
 	/**
 	 * The number of points to be generated around in a circle.
 	 */
 	private static final int numCirclePoints = 32;
 
-	//Initialize points around the circle
+	/**
+	 * The width of every guide and box outline line, since all lines are drawn in one batch.
+	 */
+	private static final float lineWidth = 3;
+
+	/**
+	 * The transformation matrix of the level, without the position of the camera.
+	 */
+	private static final Matrix4f viewMatrix = new Matrix4f();
+
+	/**
+	 * The transformation matrix the cached guides are drawn with.
+	 */
+	private static final Matrix4f modelView = new Matrix4f();
+
+	/**
+	 * The position of the camera.
+	 */
+	private static final Vector3f camera = new Vector3f();
+
+	/**
+	 * Builds the lines of the guides and box outline.
+	 */
+	private static final LineBuffer lineBuffer = new LineBuffer();
+
+	/**
+	 * Holds the lines of the guides and box outline, relative to the center of the Model, or null before the first build.
+	 */
+	private static VertexBuffer lines;
+
+	/**
+	 * Holds the quads of the scale guide boxes and bounding box, relative to the center of the Model, or null before the first build.
+	 */
+	private static VertexBuffer quads;
+
+	/**
+	 * Whether the cached guides have any quads.
+	 */
+	private static boolean hasQuads;
+
+	/**
+	 * Whether the cached guides have been built.
+	 */
+	private static boolean cached;
+
+	/**
+	 * The size of the Model the cached guides were built for.
+	 */
+	private static final Vector3f cachedSize = new Vector3f();
+
+	/**
+	 * The rotation of the Model the cached guides were built for.
+	 */
+	private static final Quaternionf cachedRotation = new Quaternionf();
+
+	/**
+	 * The selected axis the cached guides were built for.
+	 */
+	private static Axis cachedAxis;
+
+	/**
+	 * The transform mode the cached guides were built for.
+	 */
+	private static TransformMode cachedTransformMode;
+
+	/**
+	 * The view mode the cached guides were built for.
+	 */
+	private static ViewMode cachedViewMode;
+
+	/**
+	 * The rotation of guides that stay aligned with the world axes.
+	 */
+	private static final Quaternionf noRotation = new Quaternionf();
+
+	/**
+	 * Scratch vectors used while building the guides.
+	 */
+	private static final Vector3f vertex = new Vector3f(), minCorner = new Vector3f(), maxCorner = new Vector3f();
+
+	//Initialize points around the unit circle
 	static {
-		float radius = size.get(size.maxComponent()) + 1;
+		circleCos = new float[numCirclePoints];
+		circleSin = new float[numCirclePoints];
 		for (int i = 0; i < numCirclePoints; ++i) {
 			double angle = 2 * Math.PI * i / numCirclePoints;
-			float x = radius * (float) Math.cos(angle);
-			float y = radius * (float) Math.sin(angle);
-			circlePoints.add(new Vector2f(x, y));
+			circleCos[i] = (float) Math.cos(angle);
+			circleSin[i] = (float) Math.sin(angle);
 		}
 	}
 
 	/**
 	 * Calls the appropriate rendering functions.
+	 * Nothing is allocated per frame: matrices are reused, and the guides are only rebuilt when the size, rotation, selected axis, or modes change.
 	 */
 	public static void renderEvent(RenderLevelStageEvent event) {
 		Player player = Minecraft.getInstance().player;
 		Model model = Main.model;
+		//Release the uploaded previews of a Model that was replaced or unloaded.
+		if (model != renderedModel) {
+			previewMesh.close();
+			meshPreview.close();
+			renderedModel = model;
+		}
 		//Only render if player is holding a ModelHammer and if a Model is loaded.
 		if (player == null || !player.getMainHandItem().getItem().equals(ModItems.MODEL_HAMMER.get()) || model == null) return;
 
@@ -81,298 +179,273 @@ public class BoxRenderer {
 		//Size of bounding box.
 		size.set(model.maxCorner).mul(model.scale);
 
-		//Set appropriate axis alpha to 255 and unselected axes to 64.
-		if (selectedAxis == Axis.ALL) alpha.set(255);
-		else alpha.set(64).setComponent(selectedAxis.component, 255);
-
-		Vector3f camera = event.getCamera().getPosition().toVector3f();
-		PoseStack poseStack = event.getPoseStack();
+		Vec3 cameraPosition = event.getCamera().getPosition();
+		camera.set((float) cameraPosition.x, (float) cameraPosition.y, (float) cameraPosition.z);
+
+		//Copy transformation matrix from poseStack.
+		viewMatrix.set(event.getPoseStack().last().pose()).translate(-camera.x, -camera.y, -camera.z);
+
+		//Render blocks preview, or the transformed mesh until the blocks preview catches up with the transformation.
+		if (viewMode == ViewMode.BLOCKS || viewMode == ViewMode.MESH && model.isBlockFacesCurrent()) previewMesh.render(viewMatrix, model.getBlockFaces(), center, camera, event.getFrustum());
+		else if (viewMode == ViewMode.MESH) meshPreview.render(viewMatrix, model, center);
+
+		//Rebuild the guides only if they changed, since moving the Model only changes the matrix they are drawn with.
+		if (!cached || !cachedSize.equals(size) || !cachedRotation.equals(model.rotation) || cachedAxis != selectedAxis || cachedTransformMode != transformMode || cachedViewMode != viewMode) {
+			buildGuides(model.rotation);
+			cachedSize.set(size);
+			cachedRotation.set(model.rotation);
+			cachedAxis = selectedAxis;
+			cachedTransformMode = transformMode;
+			cachedViewMode = viewMode;
+			cached = true;
+		}
+		modelView.set(viewMatrix).translate(center);
+		Matrix4f projection = RenderSystem.getProjectionMatrix();
 
-		//Copy transformation and normal matrices from poseStack.
-		Matrix4f matrix4f = new Matrix4f(poseStack.last().pose()).translate(-camera.x, -camera.y, -camera.z);
-		Matrix3f matrix3f = new Matrix3f(poseStack.last().normal());
+		//Render every guide line and the box outline in one draw.
+		RenderSystem.setShader(GameRenderer::getRendertypeLinesShader);
+		RenderSystem.disableCull();
+		RenderSystem.enableDepthTest();
+		RenderSystem.enableBlend();
+		RenderSystem.lineWidth(lineWidth);
+		lines.bind();
+		lines.drawWithShader(modelView, projection, RenderSystem.getShader());
+
+		//Render every scale guide box and the bounding box in one draw.
+		if (hasQuads) {
+			RenderSystem.setShader(GameRenderer::getPositionColorShader);
+			RenderSystem.enableCull();
+			quads.bind();
+			quads.drawWithShader(modelView, projection, RenderSystem.getShader());
+		}
+		VertexBuffer.unbind();
 
-		//Get rotated transformation and normal matrices.
-		Matrix4f rotatedMatrix4f = new Matrix4f(matrix4f).translate(center).rotate(model.rotation).translate(center.negate(new Vector3f()));
-		Matrix3f rotatedMatrix3f = new Matrix3f(matrix3f).rotate(model.rotation);
+		RenderSystem.enableCull();
+	}
 
-		//Render blocks preview.
-		if (viewMode == ViewMode.BLOCKS) renderBlocksPreview(matrix4f, camera, model.blockFaces);
+	/**
+	 * Builds the guides for the transform mode and the bounding box, relative to the center of the Model, and uploads them.
+	 * @param rotation The rotation of the Model.
+	 */
+	private static void buildGuides(Quaternionf rotation) {
+		//Set appropriate axis alpha to 255 and unselected axes to 64.
+		if (selectedAxis == Axis.ALL) alpha.set(255);
+		else alpha.set(64).setComponent(selectedAxis.component, 255);
 
-		//Render appropriate visual guides for the transform mode.
-		RenderSystem.lineWidth(3);
+		lineBuffer.begin();
 		switch (HammerModes.transformMode) {
-			case ROTATE -> renderRotateGuides(rotatedMatrix4f, rotatedMatrix3f);
-			case SCALE -> renderScaleGuides(rotatedMatrix4f, rotatedMatrix3f);
-			case TRANSLATE -> renderTranslationGuides(matrix4f, matrix3f, model.rotation);
+			case ROTATE -> addRotateGuides(rotation);
+			case SCALE -> addScaleGuideLines(rotation);
+			case TRANSLATE -> addTranslationGuides(rotation);
 		}
-
-		//Render bounding box.
-		if (viewMode == ViewMode.BOX) {
-			//Corners of bounding box.
-			Vector3f cornerOne = new Vector3f(center).sub((float) Math.floor(size.x) + .5f, (float) Math.floor(size.y) + .5f, (float) Math.floor(size.z) + .5f);
-			Vector3f cornerTwo = new Vector3f(center).add((float) Math.floor(size.x) + .5f, (float) Math.floor(size.y) + .5f, (float) Math.floor(size.z) + .5f);
-
-			//Render model bounding box and box outline.
-			RenderSystem.lineWidth(2);
-			renderLineBox(rotatedMatrix4f, rotatedMatrix3f, cornerOne, cornerTwo, new Vector4i(255, 255, 255, 255));
-			renderBox(rotatedMatrix4f, cornerOne, cornerTwo, new Vector4i(255, 255, 255, 64));
+		//Half size of the bounding box, rounded to whole blocks.
+		float x = (float) Math.floor(size.x) + .5f, y = (float) Math.floor(size.y) + .5f, z = (float) Math.floor(size.z) + .5f;
+		if (viewMode == ViewMode.BOX) addLineBox(rotation, -x, -y, -z, x, y, z);
+		if (lines == null) lines = new VertexBuffer();
+		lines.bind();
+		lines.upload(lineBuffer.end());
+
+		hasQuads = HammerModes.transformMode == TransformMode.SCALE || viewMode == ViewMode.BOX;
+		if (hasQuads) {
+			BufferBuilder buffer = Tesselator.getInstance().getBuilder();
+			buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR);
+			if (HammerModes.transformMode == TransformMode.SCALE) addScaleGuideBoxes(buffer, rotation);
+			if (viewMode == ViewMode.BOX) addBox(buffer, rotation, -x, -y, -z, x, y, z, 255, 255, 255, 64);
+			if (quads == null) quads = new VertexBuffer();
+			quads.bind();
+			quads.upload(buffer.end());
 		}
-
-		RenderSystem.enableCull();
+		VertexBuffer.unbind();
 	}
 
 	/**
-	 * Renders the circles that make up the rotation guides.
-	 * The circles are formed by rendering lines connecting points around a circle.
-	 * @param matrix4f The transformation matrix.
-	 * @param matrix3f The normal matrix.
+	 * Adds the circles that make up the rotation guides.
+	 * The circles are formed by lines connecting points around a circle.
+	 * @param rotation The rotation of the Model.
 	 */
-	private static void renderRotateGuides(Matrix4f matrix4f, Matrix3f matrix3f) {
-		LineBuffer buffer = new LineBuffer(matrix4f, matrix3f);
-		buffer.begin();
+	private static void addRotateGuides(Quaternionf rotation) {
+		float radius = size.get(size.maxComponent()) + 1;
+		lineBuffer.rotation(rotation);
 		for (int i = 0; i < numCirclePoints; ++i) {
 			//Get adjacent points in circle.
-			Vector2f p1 = new Vector2f(circlePoints.get(i)).mul(size.get(size.maxComponent()) + 1);
-			Vector2f p2 = new Vector2f(circlePoints.get((i + 1) % numCirclePoints)).mul(size.get(size.maxComponent()) + 1);
-
-			//Render red, green, and blue lines of circle.
-			buffer.color(255,0,0, alpha.x).beginLine(center.x, center.y + p1.x, center.z + p1.y).endLine(center.x, center.y + p2.x, center.z + p2.y);
-			buffer.color(0,255,0, alpha.y).beginLine(center.x + p1.x, center.y, center.z + p1.y).endLine(center.x + p2.x, center.y, center.z + p2.y);
-			buffer.color(0,0,255, alpha.z).beginLine(center.x + p1.x, center.y + p1.y, center.z).endLine(center.x + p2.x, center.y + p2.y, center.z);
+			int next = (i + 1) % numCirclePoints;
+			float x1 = circleCos[i] * radius, y1 = circleSin[i] * radius;
+			float x2 = circleCos[next] * radius, y2 = circleSin[next] * radius;
+
+			//Add red, green, and blue lines of circle.
+			lineBuffer.color(255,0,0, alpha.x).beginLine(0, x1, y1).endLine(0, x2, y2);
+			lineBuffer.color(0,255,0, alpha.y).beginLine(x1, 0, y1).endLine(x2, 0, y2);
+			lineBuffer.color(0,0,255, alpha.z).beginLine(x1, y1, 0).endLine(x2, y2, 0);
 		}
-		buffer.end();
 	}
 
 	/**
-	 * Renders the lines and boxes that make up the scale guides.
-	 * @param matrix4f The transformation matrix.
-	 * @param matrix3f The normal matrix.
+	 * @return The side length of the scale guide boxes.
 	 */
-	private static void renderScaleGuides(Matrix4f matrix4f, Matrix3f matrix3f) {
-		//Size of scale guide boxes.
-		float boxSize = Math.max(.5f, Math.max(Math.min(size.x, size.y), Math.max(Math.min(size.x, size.z), Math.min(size.y, size.z))))/4;
+	private static float scaleGuideBoxSize() {
+		return Math.max(.5f, Math.max(Math.min(size.x, size.y), Math.max(Math.min(size.x, size.z), Math.min(size.y, size.z))))/4;
+	}
 
+	/**
+	 * Adds the lines that make up the scale guides.
+	 * @param rotation The rotation of the Model.
+	 */
+	private static void addScaleGuideLines(Quaternionf rotation) {
 		//Distance of scale guide boxes from center
-		Vector3f offSet = new Vector3f(size).add(boxSize, boxSize, boxSize).add(1,1,1);
-
-		//Render scale guide boxes.
-		renderCube(matrix4f, new Vector3f(center).sub(offSet.x, 0,0), boxSize, new Vector4i(255,0,0, alpha.x));
-		renderCube(matrix4f, new Vector3f(center).add(offSet.x, 0,0), boxSize, new Vector4i(255,0,0, alpha.x));
-		renderCube(matrix4f, new Vector3f(center).sub(0, offSet.y,0), boxSize, new Vector4i(0,255,0, alpha.y));
-		renderCube(matrix4f, new Vector3f(center).add(0, offSet.y,0), boxSize, new Vector4i(0,255,0, alpha.y));
-		renderCube(matrix4f, new Vector3f(center).sub(0,0, offSet.z), boxSize, new Vector4i(0,0,255, alpha.z));
-		renderCube(matrix4f, new Vector3f(center).add(0,0, offSet.z), boxSize, new Vector4i(0,0,255, alpha.z));
-
-		//Render scale guide lines.
-		LineBuffer buffer = new LineBuffer(matrix4f, matrix3f);
-		buffer.begin();
-		buffer.color(255,0,0, alpha.x).beginLine(center.x - offSet.x, center.y, center.z).endLine(center.x + offSet.x, center.y, center.z);
-		buffer.color(0,255,0, alpha.y).beginLine(center.x, center.y - offSet.y, center.z).endLine(center.x, center.y + offSet.y, center.z);
-		buffer.color(0,0,255, alpha.z).beginLine(center.x, center.y, center.z - offSet.z).endLine(center.x, center.y, center.z + offSet.z);
-		buffer.end();
+		float boxSize = scaleGuideBoxSize();
+		float x = size.x + boxSize + 1, y = size.y + boxSize + 1, z = size.z + boxSize + 1;
+
+		lineBuffer.rotation(rotation);
+		lineBuffer.color(255,0,0, alpha.x).beginLine(-x, 0, 0).endLine(x, 0, 0);
+		lineBuffer.color(0,255,0, alpha.y).beginLine(0, -y, 0).endLine(0, y, 0);
+		lineBuffer.color(0,0,255, alpha.z).beginLine(0, 0, -z).endLine(0, 0, z);
+	}
+
+	/**
+	 * Adds the boxes that make up the scale guides.
+	 * @param buffer The buffer to add the boxes to.
+	 * @param rotation The rotation of the Model.
+	 */
+	private static void addScaleGuideBoxes(BufferBuilder buffer, Quaternionf rotation) {
+		//Size of scale guide boxes, and their distance from center.
+		float boxSize = scaleGuideBoxSize();
+		float x = size.x + boxSize + 1, y = size.y + boxSize + 1, z = size.z + boxSize + 1;
+
+		addCube(buffer, rotation, -x, 0, 0, boxSize, 255, 0, 0, alpha.x);
+		addCube(buffer, rotation, x, 0, 0, boxSize, 255, 0, 0, alpha.x);
+		addCube(buffer, rotation, 0, -y, 0, boxSize, 0, 255, 0, alpha.y);
+		addCube(buffer, rotation, 0, y, 0, boxSize, 0, 255, 0, alpha.y);
+		addCube(buffer, rotation, 0, 0, -z, boxSize, 0, 0, 255, alpha.z);
+		addCube(buffer, rotation, 0, 0, z, boxSize, 0, 0, 255, alpha.z);
 	}
 
 	/**
-	 * Renders the lines that make up the translation guides.
-	 * @param matrix4f The transformation matrix.
-	 * @param matrix3f The normal matrix.
+	 * Adds the lines that make up the translation guides.
+	 * The lines are not rotated, but are long enough to reach past the rotated Model.
 	 * @param rotation The rotation of the Model.
 	 */
-	private static void renderTranslationGuides(Matrix4f matrix4f, Matrix3f matrix3f, Quaternionf rotation) {
+	private static void addTranslationGuides(Quaternionf rotation) {
 		//Find the minimum and maximum corners of model after rotated and scaled.
-		Vector3f minCorner = new Vector3f();
-		Vector3f maxCorner = new Vector3f();
+		minCorner.set(0);
+		maxCorner.set(0);
 		for (int mask = 0; mask < 8; ++mask) {
-			Vector3f corner = new Vector3f(size.x, size.y, size.z).mul((mask & 1) == 1 ? -1 : 1, (mask & 2) == 2 ? -1 : 1, (mask & 4) == 4 ? -1 : 1).rotate(rotation);
-			minCorner.min(corner);
-			maxCorner.max(corner);
+			vertex.set(size).mul((mask & 1) == 1 ? -1 : 1, (mask & 2) == 2 ? -1 : 1, (mask & 4) == 4 ? -1 : 1).rotate(rotation);
+			minCorner.min(vertex);
+			maxCorner.max(vertex);
 		}
 
 		//Length of translation guide lines.
 		float size = (maxCorner.sub(minCorner).get(maxCorner.maxComponent()) + 2) * .75f;
 
-		//Render translation guide lines.
-		LineBuffer buffer = new LineBuffer(matrix4f, matrix3f);
-		buffer.begin();
-		buffer.color(255, 0,0, alpha.x).beginLine(center.x - size, center.y, center.z).endLine(center.x + size, center.y, center.z);
-		buffer.color(0,255,0, alpha.y).beginLine(center.x, center.y - size, center.z).endLine(center.x, center.y + size, center.z);
-		buffer.color(0,0,255, alpha.z).beginLine(center.x, center.y, center.z - size).endLine(center.x, center.y, center.z + size);
-		buffer.end();
-	}
-
-	/**
-	 * Renders a preview of the Model as blocks.
-	 * @param matrix4f The transformation matrix.
-	 * @param camera The camera position.
-	 * @param points A map of Points to Bytes representing which faces to render.
-	 */
-	private static void renderBlocksPreview(Matrix4f matrix4f, Vector3f camera, Map<Point, Byte> points) {
-		//RenderSystem settings.
-		RenderSystem.setShader(GameRenderer::getPositionTexShader);
-		RenderSystem.disableCull();
-		RenderSystem.enableDepthTest();
-		RenderSystem.enableBlend();
-		RenderSystem.setShaderTexture(0, defaultTexture);
-
-		//Getting and starting buffer
-		BufferBuilder buffer = Tesselator.getInstance().getBuilder();
-		buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
-
-		//Calculating where to cull faces that are facing away from the camera.
-		Vector3f cullNegative = new Vector3f(camera).sub(.4995f,.4995f,.4995f);
-		Vector3f cullPositive = new Vector3f(cullNegative).add(.999f,.999f,.999f);
-
-		//Two points for minimum and maximum corners of blocks.
-		Vector3f p1 = new Vector3f();
-		Vector3f p2 = new Vector3f();
-
-		for (Map.Entry<Point, Byte> entry: points.entrySet()) {
-			Point p = entry.getKey();
-			byte faces = entry.getValue();
-
-			//Setting the two corners.
-			p1.set(p.x-.4995f, p.y-.4995f, p.z-.4995f).add(center);
-			p2.set(p1).add(.999f,.999f,.999f);
-
-			//Render each of the six faces if it is facing towards the camera, and if its corresponding bit is a 1.
-			// - x
-			if (p1.x > cullNegative.x && (faces & 32) == 32) {
-				buffer.vertex(matrix4f, p1.x, p1.y, p1.z).uv(1,1).endVertex();
-				buffer.vertex(matrix4f, p1.x, p1.y, p2.z).uv(1,0).endVertex();
-				buffer.vertex(matrix4f, p1.x, p2.y, p2.z).uv(0,0).endVertex();
-				buffer.vertex(matrix4f, p1.x, p2.y, p1.z).uv(0,1).endVertex();
-			}
-			// + x
-			if (p2.x < cullPositive.x && (faces & 16) == 16) {
-				buffer.vertex(matrix4f, p2.x, p1.y, p1.z).uv(0,0).endVertex();
-				buffer.vertex(matrix4f, p2.x, p2.y, p1.z).uv(0,1).endVertex();
-				buffer.vertex(matrix4f, p2.x, p2.y, p2.z).uv(1,1).endVertex();
-				buffer.vertex(matrix4f, p2.x, p1.y, p2.z).uv(1,0).endVertex();
-			}
-			// - y
-			if (p1.y > cullNegative.y && (faces & 8) == 8) {
-				buffer.vertex(matrix4f, p1.x, p1.y, p1.z).uv(0,0).endVertex();
-				buffer.vertex(matrix4f, p2.x, p1.y, p1.z).uv(0,1).endVertex();
-				buffer.vertex(matrix4f, p2.x, p1.y, p2.z).uv(1,1).endVertex();
-				buffer.vertex(matrix4f, p1.x, p1.y, p2.z).uv(1,0).endVertex();
-			}
-			// + y
-			if (p2.y < cullPositive.y && (faces & 4) == 4) {
-				buffer.vertex(matrix4f, p1.x, p2.y, p1.z).uv(1,1).endVertex();
-				buffer.vertex(matrix4f, p1.x, p2.y, p2.z).uv(1,0).endVertex();
-				buffer.vertex(matrix4f, p2.x, p2.y, p2.z).uv(0,0).endVertex();
-				buffer.vertex(matrix4f, p2.x, p2.y, p1.z).uv(0,1).endVertex();
-			}
-			// - z
-			if (p1.z > cullNegative.z && (faces & 2) == 2) {
-				buffer.vertex(matrix4f, p1.x, p1.y, p1.z).uv(0,0).endVertex();
-				buffer.vertex(matrix4f, p1.x, p2.y, p1.z).uv(0,1).endVertex();
-				buffer.vertex(matrix4f, p2.x, p2.y, p1.z).uv(1,1).endVertex();
-				buffer.vertex(matrix4f, p2.x, p1.y, p1.z).uv(1,0).endVertex();
-			}
-			// + z
-			if (p2.z < cullPositive.z && (faces & 1) == 1) {
-				buffer.vertex(matrix4f, p1.x, p1.y, p2.z).uv(1,1).endVertex();
-				buffer.vertex(matrix4f, p2.x, p1.y, p2.z).uv(1,0).endVertex();
-				buffer.vertex(matrix4f, p2.x, p2.y, p2.z).uv(0,0).endVertex();
-				buffer.vertex(matrix4f, p1.x, p2.y, p2.z).uv(0,1).endVertex();
-			}
-		}
-		Tesselator.getInstance().end();
+		lineBuffer.rotation(noRotation);
+		lineBuffer.color(255, 0,0, alpha.x).beginLine(-size, 0, 0).endLine(size, 0, 0);
+		lineBuffer.color(0,255,0, alpha.y).beginLine(0, -size, 0).endLine(0, size, 0);
+		lineBuffer.color(0,0,255, alpha.z).beginLine(0, 0, -size).endLine(0, 0, size);
 	}
 
-
 	/**
-	 * Renders the outline of a box.
-	 * @param matrix4f The transformation matrix.
-	 * @param matrix3f The normal matrix.
-	 * @param cornerOne The first corner of the box.
-	 * @param cornerTwo The second corner of the box.
-	 * @param color The color of the box.
+	 * Adds the outline of a box.
+	 * @param rotation The rotation applied to the corners of the box, about the origin.
+	 * @param x1 The minimum x-coordinate of the box.
+	 * @param y1 The minimum y-coordinate of the box.
+	 * @param z1 The minimum z-coordinate of the box.
+	 * @param x2 The maximum x-coordinate of the box.
+	 * @param y2 The maximum y-coordinate of the box.
+	 * @param z2 The maximum z-coordinate of the box.
 	 */
-	public static void renderLineBox(Matrix4f matrix4f, Matrix3f matrix3f, Vector3f cornerOne, Vector3f cornerTwo, Vector4i color) {
-		//Get minimum and maximum corners of the box.
-		Vector3f p1 = new Vector3f(cornerOne).min(cornerTwo);
-		Vector3f p2 = new Vector3f(cornerTwo).max(cornerTwo);
-
-		//Render three lines from four non-adjacent corners.
-		LineBuffer buffer = new LineBuffer(matrix4f, matrix3f).color(color.x, color.y, color.z, color.w);
-		buffer.begin();
-		buffer.beginLine(p1.x, p1.y, p1.z).endLine(p2.x, p1.y, p1.z).endLine(p1.x, p2.y, p1.z).endLine(p1.x, p1.y, p2.z);
-		buffer.beginLine(p2.x, p1.y, p2.z).endLine(p1.x, p1.y, p2.z).endLine(p2.x, p2.y, p2.z).endLine(p2.x, p1.y, p1.z);
-		buffer.beginLine(p2.x, p2.y, p1.z).endLine(p1.x, p2.y, p1.z).endLine(p2.x, p1.y, p1.z).endLine(p2.x, p2.y, p2.z);
-		buffer.beginLine(p1.x, p2.y, p2.z).endLine(p1.x, p2.y, p1.z).endLine(p1.x, p1.y, p2.z).endLine(p2.x, p2.y, p2.z);
-		buffer.end();
+	private static void addLineBox(Quaternionf rotation, float x1, float y1, float z1, float x2, float y2, float z2) {
+		//Add three lines from four non-adjacent corners.
+		lineBuffer.rotation(rotation).color(255, 255, 255, 255);
+		lineBuffer.beginLine(x1, y1, z1).endLine(x2, y1, z1).endLine(x1, y2, z1).endLine(x1, y1, z2);
+		lineBuffer.beginLine(x2, y1, z2).endLine(x1, y1, z2).endLine(x2, y2, z2).endLine(x2, y1, z1);
+		lineBuffer.beginLine(x2, y2, z1).endLine(x1, y2, z1).endLine(x2, y1, z1).endLine(x2, y2, z2);
+		lineBuffer.beginLine(x1, y2, z2).endLine(x1, y2, z1).endLine(x1, y1, z2).endLine(x2, y2, z2);
 	}
 
 	/**
-	 * Renders a filled box.
-	 * @param matrix4f The transformation matrix.
-	 * @param cornerOne The first corner of the box.
-	 * @param cornerTwo The second corner of the box.
-	 * @param color The color of the box.
+	 * Adds a filled box.
+	 * @param buffer The buffer to add the box to.
+	 * @param rotation The rotation applied to the corners of the box, about the origin.
+	 * @param x1 The minimum x-coordinate of the box.
+	 * @param y1 The minimum y-coordinate of the box.
+	 * @param z1 The minimum z-coordinate of the box.
+	 * @param x2 The maximum x-coordinate of the box.
+	 * @param y2 The maximum y-coordinate of the box.
+	 * @param z2 The maximum z-coordinate of the box.
+	 * @param r Red.
+	 * @param g Green.
+	 * @param b Blue.
+	 * @param a Alpha.
 	 */
-	public static void renderBox(Matrix4f matrix4f, Vector3f cornerOne, Vector3f cornerTwo, Vector4i color) {
-		//RenderSystem settings.
-		RenderSystem.setShader(GameRenderer::getPositionColorShader);
-		RenderSystem.enableCull();
-		RenderSystem.enableDepthTest();
-		RenderSystem.enableBlend();
-
-		//Get minimum and maximum corners of the box.
-		Vector3f p1 = new Vector3f(cornerOne).min(cornerTwo);
-		Vector3f p2 = new Vector3f(cornerTwo).max(cornerTwo);
-
-		//Render each side of the box.
-		BufferBuilder buffer = Tesselator.getInstance().getBuilder();
-		buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR);
+	private static void addBox(BufferBuilder buffer, Quaternionf rotation, float x1, float y1, float z1, float x2, float y2, float z2, int r, int g, int b, int a) {
 		//-x
-		buffer.vertex(matrix4f, p1.x, p1.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p1.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p2.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p2.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
+		addVertex(buffer, rotation, x1, y1, z1, r, g, b, a);
+		addVertex(buffer, rotation, x1, y1, z2, r, g, b, a);
+		addVertex(buffer, rotation, x1, y2, z2, r, g, b, a);
+		addVertex(buffer, rotation, x1, y2, z1, r, g, b, a);
 
 		//+x
-		buffer.vertex(matrix4f, p2.x, p1.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p2.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p2.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p1.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
+		addVertex(buffer, rotation, x2, y1, z1, r, g, b, a);
+		addVertex(buffer, rotation, x2, y2, z1, r, g, b, a);
+		addVertex(buffer, rotation, x2, y2, z2, r, g, b, a);
+		addVertex(buffer, rotation, x2, y1, z2, r, g, b, a);
 
 		//-y
-		buffer.vertex(matrix4f, p1.x, p1.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p1.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p1.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p1.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
+		addVertex(buffer, rotation, x1, y1, z1, r, g, b, a);
+		addVertex(buffer, rotation, x2, y1, z1, r, g, b, a);
+		addVertex(buffer, rotation, x2, y1, z2, r, g, b, a);
+		addVertex(buffer, rotation, x1, y1, z2, r, g, b, a);
 
 		//+y
-		buffer.vertex(matrix4f, p1.x, p2.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p2.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p2.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p2.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
+		addVertex(buffer, rotation, x1, y2, z1, r, g, b, a);
+		addVertex(buffer, rotation, x1, y2, z2, r, g, b, a);
+		addVertex(buffer, rotation, x2, y2, z2, r, g, b, a);
+		addVertex(buffer, rotation, x2, y2, z1, r, g, b, a);
 
 		//-z
-		buffer.vertex(matrix4f, p1.x, p1.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p2.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p2.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p1.y, p1.z).color(color.x, color.y, color.z, color.w).endVertex();
+		addVertex(buffer, rotation, x1, y1, z1, r, g, b, a);
+		addVertex(buffer, rotation, x1, y2, z1, r, g, b, a);
+		addVertex(buffer, rotation, x2, y2, z1, r, g, b, a);
+		addVertex(buffer, rotation, x2, y1, z1, r, g, b, a);
 
 		//+z
-		buffer.vertex(matrix4f, p1.x, p1.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p1.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p2.x, p2.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		buffer.vertex(matrix4f, p1.x, p2.y, p2.z).color(color.x, color.y, color.z, color.w).endVertex();
-		Tesselator.getInstance().end();
+		addVertex(buffer, rotation, x1, y1, z2, r, g, b, a);
+		addVertex(buffer, rotation, x2, y1, z2, r, g, b, a);
+		addVertex(buffer, rotation, x2, y2, z2, r, g, b, a);
+		addVertex(buffer, rotation, x1, y2, z2, r, g, b, a);
 	}
 
 	/**
-	 * Renders a filled cube.
-	 * @param matrix4f The transformation matrix.
-	 * @param center The center of the cube.
+	 * Adds a filled cube.
+	 * @param buffer The buffer to add the cube to.
+	 * @param rotation The rotation applied to the corners of the cube, about the origin.
+	 * @param x The x-coordinate of the center of the cube.
+	 * @param y The y-coordinate of the center of the cube.
+	 * @param z The z-coordinate of the center of the cube.
 	 * @param s The side length of the cube.
-	 * @param color The color of the cube.
+	 * @param r Red.
+	 * @param g Green.
+	 * @param b Blue.
+	 * @param a Alpha.
+	 */
+	private static void addCube(BufferBuilder buffer, Quaternionf rotation, float x, float y, float z, float s, int r, int g, int b, int a) {
+		addBox(buffer, rotation, x - s/2, y - s/2, z - s/2, x + s/2, y + s/2, z + s/2, r, g, b, a);
+	}
+
+	/**
+	 * Adds a rotated vertex.
+	 * @param buffer The buffer to add the vertex to.
+	 * @param rotation The rotation applied to the vertex, about the origin.
+	 * @param x X-coordinate.
+	 * @param y Y-coordinate.
+	 * @param z Z-coordinate.
+	 * @param r Red.
+	 * @param g Green.
+	 * @param b Blue.
+	 * @param a Alpha.
 	 */
-	public static void renderCube(Matrix4f matrix4f, Vector3f center, float s, Vector4i color) {
-		renderBox(matrix4f, new Vector3f(center).sub(s/2,s/2,s/2), new Vector3f(center).add(s/2,s/2,s/2), color);
+	private static void addVertex(BufferBuilder buffer, Quaternionf rotation, float x, float y, float z, int r, int g, int b, int a) {
+		vertex.set(x, y, z).rotate(rotation);
+		buffer.vertex(vertex.x, vertex.y, vertex.z).color(r, g, b, a).endVertex();
 	}
 }
@@ -1,16 +1,17 @@
 package com.knkevin.model_tools.renderer;
 
-import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.blaze3d.vertex.Tesselator;
 import com.mojang.blaze3d.vertex.VertexFormat;
-import net.minecraft.client.renderer.GameRenderer;
-import org.joml.Matrix3f;
-import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
 
 /**
- * A utility class used for rendering lines.
+ * A utility class used for building lines.
+ * Lines are written untransformed, so that they can be uploaded once and drawn with any transformation matrix.
+ * A single LineBuffer can be reused for every batch of lines, since it does not allocate while building.
  */
 public class LineBuffer {
     /**
@@ -19,48 +20,48 @@ public class LineBuffer {
     private final BufferBuilder buffer = Tesselator.getInstance().getBuilder();
 
     /**
-     * Transformation matrix.
+     * Rotation applied to every point of a line.
      */
-    private final Matrix4f matrix4f;
+    private final Quaternionf rotation = new Quaternionf();
 
     /**
-     * Normal matrix.
+     * The rotated start point of a line.
      */
-    private final Matrix3f matrix3f;
+    private final Vector3f start = new Vector3f();
 
     /**
-     * Coordinates for the start point of a line.
+     * The rotated end point of a line.
      */
-    private float x1, y1, z1;
+    private final Vector3f end = new Vector3f();
 
     /**
      * Default color values.
      */
     private int red = 255, green= 255, blue = 255, alpha = 255;
 
-    public LineBuffer(Matrix4f m4, Matrix3f m3) {
-        //RenderSystem Settings
-        RenderSystem.setShader(GameRenderer::getRendertypeLinesShader);
-        RenderSystem.disableCull();
-        RenderSystem.enableDepthTest();
-        RenderSystem.enableBlend();
-
-        matrix4f = m4;
-        matrix3f = m3;
-    }
-
     /**
-     * Begin the buffer to allow rendering.
+     * Begin the buffer to allow adding lines.
      */
     public void begin() {
         buffer.begin(VertexFormat.Mode.LINES, DefaultVertexFormat.POSITION_COLOR_NORMAL);
     }
 
     /**
-     * End the buffer and render.
+     * End the buffer.
+     * @return The lines added since begin, to be uploaded or drawn before the buffer is begun again.
      */
-    public void end() {
-        Tesselator.getInstance().end();
+    public BufferBuilder.RenderedBuffer end() {
+        return buffer.end();
+    }
+
+    /**
+     * Sets the rotation applied to the points of the lines added after it.
+     * @param q The rotation, about the origin.
+     * @return This LineBuffer.
+     */
+    public LineBuffer rotation(Quaternionfc q) {
+        rotation.set(q);
+        return this;
     }
 
     /**
@@ -87,14 +88,13 @@ public class LineBuffer {
      * @return This LineBuffer.
      */
     public LineBuffer beginLine(float x, float y, float z) {
-        x1 = x;
-        y1 = y;
-        z1 = z;
+        start.set(x, y, z).rotate(rotation);
         return this;
     }
 
     /**
      * Creates a line from the start point to this end point and writes it to the buffer.
+     * The start point is kept, so several lines can be drawn from the same point.
      * @param x X-coordinate.
      * @param y Y-coordinate.
      * @param z Z-coordinate.
@@ -102,10 +102,12 @@ public class LineBuffer {
      */
     public LineBuffer endLine(float x, float y, float z) {
         if (!buffer.building()) return this;
-        float dx = x-x1, dy = y-y1, dz = z-z1;
+        end.set(x, y, z).rotate(rotation);
+        float dx = end.x-start.x, dy = end.y-start.y, dz = end.z-start.z;
         float distance = (float) Math.sqrt(dx*dx + dy*dy + dz*dz);
-        buffer.vertex(matrix4f, x1, y1, z1).color(red, green, blue, alpha).normal(matrix3f,dx/distance,dy/distance,dz/distance).endVertex();
-        buffer.vertex(matrix4f, x, y, z).color(red, green, blue, alpha).normal(matrix3f,dx/distance,dy/distance,dz/distance).endVertex();
+        //The lines shader transforms the normal with the model view matrix, so it stays in the same space as the points.
+        buffer.vertex(start.x, start.y, start.z).color(red, green, blue, alpha).normal(dx/distance, dy/distance, dz/distance).endVertex();
+        buffer.vertex(end.x, end.y, end.z).color(red, green, blue, alpha).normal(dx/distance, dy/distance, dz/distance).endVertex();
         return this;
     }
 }
@@ -0,0 +1,110 @@
+package com.knkevin.model_tools.renderer;
+
+import com.knkevin.model_tools.models.Model;
+import com.knkevin.model_tools.models.utils.Mesh;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
+import net.minecraft.client.renderer.GameRenderer;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+/**
+ * The source triangles of a Model, uploaded to a VertexBuffer once and drawn with the live rotation and scale of the Model.
+ * Used while the Model is being transformed, so that the preview follows the input without voxelizing.
+ * Must only be used on the render thread.
+ */
+public class MeshPreview {
+    /**
+     * The direction of the light used to shade each face, in the coordinates of the Mesh.
+     */
+    private static final Vector3f LIGHT = new Vector3f(.3f, 1, .5f).normalize();
+
+    /**
+     * Holds the uploaded triangles, or null before the first upload.
+     */
+    private VertexBuffer vertexBuffer;
+
+    /**
+     * The Mesh the uploaded triangles were built from.
+     */
+    private Mesh uploaded;
+
+    /**
+     * The transformation matrix the triangles are drawn with, reused every frame.
+     */
+    private final Matrix4f modelView = new Matrix4f();
+
+    /**
+     * Draws the triangles of a Model, uploading them first if the Model's Mesh changed.
+     * @param matrix4f The transformation matrix.
+     * @param model The Model to draw.
+     * @param center The position of the Model.
+     */
+    public void render(Matrix4f matrix4f, Model model, Vector3f center) {
+        Mesh mesh = model.getMesh();
+        if (mesh == null || mesh.faceCount() == 0) return;
+        if (mesh != uploaded) upload(mesh);
+
+        //RenderSystem settings.
+        RenderSystem.setShader(GameRenderer::getPositionColorShader);
+        RenderSystem.disableCull();
+        RenderSystem.enableDepthTest();
+        RenderSystem.enableBlend();
+
+        modelView.set(matrix4f).translate(center).rotate(model.rotation).scale(model.scale);
+        vertexBuffer.bind();
+        vertexBuffer.drawWithShader(modelView, RenderSystem.getProjectionMatrix(), RenderSystem.getShader());
+        VertexBuffer.unbind();
+    }
+
+    /**
+     * Releases the VertexBuffer of this MeshPreview.
+     */
+    public void close() {
+        if (vertexBuffer != null) vertexBuffer.close();
+        vertexBuffer = null;
+        uploaded = null;
+    }
+
+    /**
+     * Splits every face of a Mesh into a triangle fan, shades each face by its normal, and uploads the triangles.
+     * @param mesh The Mesh to upload.
+     */
+    private void upload(Mesh mesh) {
+        uploaded = mesh;
+        BufferBuilder buffer = Tesselator.getInstance().getBuilder();
+        buffer.begin(VertexFormat.Mode.TRIANGLES, DefaultVertexFormat.POSITION_COLOR);
+        Vector3f a = new Vector3f(), b = new Vector3f(), c = new Vector3f(), normal = new Vector3f();
+        for (int face = 0; face < mesh.faceCount(); ++face) {
+            int first = mesh.faceStarts[face], last = mesh.faceStarts[face + 1];
+            load(mesh, first, a);
+            for (int i = first + 1; i < last - 1; ++i) {
+                load(mesh, i, b);
+                load(mesh, i + 1, c);
+                //Two-sided lighting, since the winding of the source faces is unknown.
+                b.sub(a, normal).cross(c.x - a.x, c.y - a.y, c.z - a.z);
+                float lengthSquared = normal.lengthSquared();
+                float light = lengthSquared == 0 ? 1 : Math.abs(normal.dot(LIGHT)) / (float) Math.sqrt(lengthSquared);
+                int shade = (int) (110 + 145 * light);
+                buffer.vertex(a.x, a.y, a.z).color(shade, shade, shade, 160).endVertex();
+                buffer.vertex(b.x, b.y, b.z).color(shade, shade, shade, 160).endVertex();
+                buffer.vertex(c.x, c.y, c.z).color(shade, shade, shade, 160).endVertex();
+            }
+        }
+        BufferBuilder.RenderedBuffer rendered = buffer.end();
+        if (vertexBuffer == null) vertexBuffer = new VertexBuffer();
+        vertexBuffer.bind();
+        vertexBuffer.upload(rendered);
+        VertexBuffer.unbind();
+    }
+
+    /**
+     * @param mesh The Mesh the corner belongs to.
+     * @param corner The index of a face corner.
+     * @param destination The vector to store the position of the corner in.
+     */
+    private static void load(Mesh mesh, int corner, Vector3f destination) {
+        int xyz = mesh.vertexIndices[corner] * 3;
+        destination.set(mesh.positions[xyz], mesh.positions[xyz + 1], mesh.positions[xyz + 2]);
+    }
+}
@@ -0,0 +1,290 @@
+package com.knkevin.model_tools.renderer;
+
+import com.knkevin.model_tools.models.voxels.SectionQuads;
+import com.knkevin.model_tools.models.voxels.VoxelSections;
+import com.knkevin.model_tools.models.voxels.VoxelSnapshot;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
+import net.minecraft.client.renderer.GameRenderer;
+import net.minecraft.client.renderer.ShaderInstance;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.phys.AABB;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The quads of a blocks preview, kept in one VertexBuffer per section of voxels on the GPU.
+ * The quads are built with each VoxelSnapshot on the preview worker, so the render thread only uploads them.
+ * Each section is only uploaded again when a new VoxelSnapshot changes its voxels, so each frame only changes the model matrix.
+ * Sections outside of the camera's frustum are not drawn, and sections far from the camera are drawn at a coarser level of detail.
+ * The texture must use repeat wrapping, since merged quads tile it once per voxel.
+ * Must only be used on the render thread.
+ */
+public class PreviewMesh {
+    /**
+     * The texture drawn on every face of the preview.
+     */
+    private static final ResourceLocation TEXTURE = new ResourceLocation("textures/block/iron_block.png");
+
+    /**
+     * Sections closer than this many blocks to the camera are drawn at full detail.
+     * Every doubling of the distance beyond it halves the detail, down to VoxelSections.MAX_LEVEL.
+     */
+    private static final float LOD_DISTANCE = 64;
+
+    /**
+     * The names of the samplers a shader can have, in the order of the shader textures bound to them.
+     */
+    private static final String[] SAMPLERS = {"Sampler0", "Sampler1", "Sampler2", "Sampler3", "Sampler4", "Sampler5", "Sampler6", "Sampler7", "Sampler8", "Sampler9", "Sampler10", "Sampler11"};
+
+    /**
+     * The uploaded quads of a single section.
+     */
+    private static class SectionMesh {
+        /**
+         * Holds the uploaded quads of each level of detail, or null for levels that have not been drawn yet.
+         */
+        private final VertexBuffer[] levels = new VertexBuffer[VoxelSections.MAX_LEVEL + 1];
+
+        /**
+         * The bounding box of the section, relative to the position of the Model.
+         */
+        private final AABB bounds;
+
+        /**
+         * The bounding box of the section in the world, for the position of the Model in worldCenter.
+         */
+        private AABB worldBounds;
+
+        /**
+         * The center of the section in the world, for the position of the Model in worldCenter.
+         */
+        private float centerX, centerY, centerZ;
+
+        /**
+         * The voxels the uploaded quads were built from.
+         */
+        private VoxelSections.Section section;
+
+        /**
+         * The quads to upload, built on the preview worker.
+         */
+        private SectionQuads quads;
+
+        /**
+         * @param section The section to draw.
+         * @param quads The quads of the section.
+         * @param voxelSize The side length in blocks of each voxel of the section.
+         */
+        private SectionMesh(VoxelSections.Section section, SectionQuads quads, int voxelSize) {
+            int shift = VoxelSections.SHIFT;
+            bounds = new AABB(
+                    SectionQuads.edge(section.x() << shift, voxelSize), SectionQuads.edge(section.y() << shift, voxelSize), SectionQuads.edge(section.z() << shift, voxelSize),
+                    SectionQuads.edge((section.x() + 1) << shift, voxelSize), SectionQuads.edge((section.y() + 1) << shift, voxelSize), SectionQuads.edge((section.z() + 1) << shift, voxelSize)
+            );
+            this.section = section;
+            this.quads = quads;
+        }
+
+        /**
+         * Moves the world-space bounds and center of the section to a new position of the Model.
+         * @param center The position of the Model.
+         */
+        private void moveTo(Vector3f center) {
+            worldBounds = bounds.move(center.x, center.y, center.z);
+            centerX = (float) (worldBounds.minX + worldBounds.maxX) / 2;
+            centerY = (float) (worldBounds.minY + worldBounds.maxY) / 2;
+            centerZ = (float) (worldBounds.minZ + worldBounds.maxZ) / 2;
+        }
+
+        /**
+         * Releases the VertexBuffers of every level of detail.
+         */
+        private void close() {
+            for (int level = 0; level < levels.length; ++level) {
+                if (levels[level] != null) levels[level].close();
+                levels[level] = null;
+            }
+        }
+    }
+
+    /**
+     * The uploaded sections, keyed by their packed coordinates.
+     */
+    private final Map<Long, SectionMesh> sections = new HashMap<>();
+
+    /**
+     * The uploaded sections in the order they are drawn, so that drawing them does not allocate an iterator.
+     * Only the first sectionCount entries are used.
+     */
+    private SectionMesh[] drawOrder = new SectionMesh[0];
+
+    /**
+     * The number of sections in drawOrder.
+     */
+    private int sectionCount;
+
+    /**
+     * The position of the Model that the world-space bounds of the sections were computed for, or NaN if they need to be recomputed.
+     */
+    private final Vector3f worldCenter = new Vector3f(Float.NaN);
+
+    /**
+     * The epoch of the VoxelSnapshot the uploaded sections were built from.
+     */
+    private long epoch = -1;
+
+    /**
+     * The side length in blocks of each voxel of the uploaded sections.
+     */
+    private int voxelSize = 1;
+
+    /**
+     * The transformation matrix the sections are drawn with, reused every frame.
+     */
+    private final Matrix4f modelView = new Matrix4f();
+
+    /**
+     * Draws the preview of a snapshot, replacing the sections that changed since the last frame first.
+     * The shader and its uniforms are applied once, since every section is drawn with the same matrices, and each visible section is then only bound and drawn.
+     * Faces pointing away from the camera are culled by the GPU, since every quad is wound counterclockwise when seen from outside.
+     * @param matrix4f The transformation matrix.
+     * @param snapshot The voxels to draw.
+     * @param center The position of the Model, which voxel coordinates are relative to.
+     * @param camera The camera position, used to pick the level of detail of each section.
+     * @param frustum The frustum of the camera, used to skip sections that are not visible. May be null.
+     */
+    public void render(Matrix4f matrix4f, VoxelSnapshot snapshot, Vector3f center, Vector3f camera, Frustum frustum) {
+        if (snapshot.epoch() != epoch) update(snapshot);
+        if (sectionCount == 0) return;
+        if (!worldCenter.equals(center)) {
+            for (int i = 0; i < sectionCount; ++i) drawOrder[i].moveTo(center);
+            worldCenter.set(center);
+        }
+
+        //RenderSystem settings.
+        RenderSystem.setShader(GameRenderer::getPositionTexShader);
+        RenderSystem.enableCull();
+        RenderSystem.enableDepthTest();
+        RenderSystem.enableBlend();
+        RenderSystem.setShaderTexture(0, TEXTURE);
+
+        modelView.set(matrix4f).translate(center);
+        ShaderInstance shader = RenderSystem.getShader();
+        applyShader(shader, modelView);
+        //Coarse voxels already count as levels of detail.
+        int coarseLevels = Integer.numberOfTrailingZeros(voxelSize);
+        for (int i = 0; i < sectionCount; ++i) {
+            SectionMesh section = drawOrder[i];
+            if (frustum != null && !frustum.isVisible(section.worldBounds)) continue;
+            float dx = section.centerX - camera.x, dy = section.centerY - camera.y, dz = section.centerZ - camera.z;
+            int level = Math.min(Math.max(0, levelOf(dx * dx + dy * dy + dz * dz) - coarseLevels), section.quads.maxLevel());
+            if (section.levels[level] == null) section.levels[level] = upload(section.quads.vertices(level));
+            section.levels[level].bind();
+            section.levels[level].draw();
+        }
+        shader.clear();
+        VertexBuffer.unbind();
+    }
+
+    /**
+     * Sets the samplers and uniforms of a shader and applies it, as VertexBuffer#drawWithShader does for each draw.
+     * @param shader The shader to apply.
+     * @param modelView The model view matrix every section is drawn with.
+     */
+    private static void applyShader(ShaderInstance shader, Matrix4f modelView) {
+        for (int i = 0; i < SAMPLERS.length; ++i) shader.setSampler(SAMPLERS[i], RenderSystem.getShaderTexture(i));
+        if (shader.MODEL_VIEW_MATRIX != null) shader.MODEL_VIEW_MATRIX.set(modelView);
+        if (shader.PROJECTION_MATRIX != null) shader.PROJECTION_MATRIX.set(RenderSystem.getProjectionMatrix());
+        if (shader.COLOR_MODULATOR != null) shader.COLOR_MODULATOR.set(RenderSystem.getShaderColor());
+        if (shader.FOG_START != null) shader.FOG_START.set(RenderSystem.getShaderFogStart());
+        if (shader.FOG_END != null) shader.FOG_END.set(RenderSystem.getShaderFogEnd());
+        if (shader.FOG_COLOR != null) shader.FOG_COLOR.set(RenderSystem.getShaderFogColor());
+        if (shader.FOG_SHAPE != null) shader.FOG_SHAPE.set(RenderSystem.getShaderFogShape().getIndex());
+        if (shader.TEXTURE_MATRIX != null) shader.TEXTURE_MATRIX.set(RenderSystem.getTextureMatrix());
+        if (shader.GAME_TIME != null) shader.GAME_TIME.set(RenderSystem.getShaderGameTime());
+        RenderSystem.setupShaderLights(shader);
+        shader.apply();
+    }
+
+    /**
+     * Releases the VertexBuffers of this PreviewMesh.
+     */
+    public void close() {
+        for (SectionMesh section: sections.values()) section.close();
+        sections.clear();
+        Arrays.fill(drawOrder, null);
+        sectionCount = 0;
+        epoch = -1;
+    }
+
+    /**
+     * Replaces the sections whose voxels changed in a snapshot, and releases the sections that no longer hold any voxels.
+     * @param snapshot The voxels to draw.
+     */
+    private void update(VoxelSnapshot snapshot) {
+        epoch = snapshot.epoch();
+        if (snapshot.voxelSize() != voxelSize) {
+            //Sections of different voxel sizes cover different blocks, so none can be reused.
+            for (SectionMesh section: sections.values()) section.close();
+            sections.clear();
+            voxelSize = snapshot.voxelSize();
+        }
+        VoxelSections voxelSections = snapshot.sections();
+        sections.entrySet().removeIf(entry -> {
+            if (voxelSections.get(entry.getKey()) != null) return false;
+            entry.getValue().close();
+            return true;
+        });
+        //Levels of detail are uploaded when first drawn, so only the level in use is uploaded.
+        for (VoxelSections.Section section: voxelSections.sections()) {
+            SectionMesh mesh = sections.get(section.key());
+            if (mesh == null) {
+                sections.put(section.key(), new SectionMesh(section, voxelSections.quads(section), voxelSize));
+            } else if (mesh.section.fingerprint() != section.fingerprint()) {
+                mesh.close();
+                mesh.section = section;
+                mesh.quads = voxelSections.quads(section);
+            }
+        }
+        if (drawOrder.length < sections.size()) drawOrder = new SectionMesh[sections.size()];
+        Arrays.fill(drawOrder, null);
+        sectionCount = 0;
+        for (SectionMesh mesh: sections.values()) drawOrder[sectionCount++] = mesh;
+        worldCenter.set(Float.NaN);
+    }
+
+    /**
+     * @param distanceSquared The squared distance from the camera to the center of a section.
+     * @return The level of detail to draw the section at.
+     */
+    private static int levelOf(float distanceSquared) {
+        int level = 0;
+        while (level < VoxelSections.MAX_LEVEL && distanceSquared >= LOD_DISTANCE * LOD_DISTANCE * (1L << (level * 2))) ++level;
+        return level;
+    }
+
+    /**
+     * Uploads the quads of a level of detail of a section to a new VertexBuffer.
+     * The vertices are already laid out in the POSITION_TEX format, so they are copied into the BufferBuilder as they are.
+     * @param vertices The vertices of the quads.
+     * @return The VertexBuffer holding the quads.
+     */
+    private static VertexBuffer upload(ByteBuffer vertices) {
+        BufferBuilder buffer = Tesselator.getInstance().getBuilder();
+        buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
+        buffer.putBulkData(vertices);
+        BufferBuilder.RenderedBuffer rendered = buffer.end();
+        VertexBuffer vertexBuffer = new VertexBuffer();
+        vertexBuffer.bind();
+        vertexBuffer.upload(rendered);
+        VertexBuffer.unbind();
+        return vertexBuffer;
+    }
+}
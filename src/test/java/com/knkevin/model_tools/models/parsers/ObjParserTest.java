@@ -0,0 +1,162 @@
+package com.knkevin.model_tools.models.parsers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests parsing obj files with the byte-level tokenizer.
+ */
+public class ObjParserTest {
+    @TempDir
+    Path folder;
+
+    /**
+     * Writes an obj file and parses it on a single thread.
+     * @param contents The contents of the obj file.
+     * @return The parser holding the contents of the file.
+     * @throws IOException The file could not be written or read.
+     */
+    private ObjParser parse(String contents) throws IOException {
+        Path file = Files.writeString(folder.resolve("model.obj"), contents);
+        ObjParser parser = new ObjParser(Map.of("red", 1, "blue", 2), 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            parser.parse(channel);
+        }
+        return parser;
+    }
+
+    /**
+     * Positive indices are 1-based, and negative indices count back from the last vertex read before the face.
+     */
+    @Test
+    public void resolvesPositiveAndNegativeIndices() throws IOException {
+        ObjParser parser = parse("""
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                vt 0 0
+                vt 1 0
+                vt 0 1
+                f 1/1 2/2 3/3
+                v 0 0 1
+                f -4 -3 -1
+                f -2/-1 2//5 3/-3/1
+                """);
+        assertEquals(3, parser.faceCount());
+        assertArrayEquals(new int[] {0, 3, 6, 9}, parser.faceStarts.toArray());
+        assertArrayEquals(new int[] {0, 1, 2, 0, 1, 3, 2, 1, 2}, parser.vertexIndices.toArray());
+        assertArrayEquals(new int[] {0, 1, 2, -1, -1, -1, 2, -1, 0}, parser.textureIndices.toArray());
+    }
+
+    /**
+     * Signs, exponents, missing leading digits, and names that are not numbers are all read as floats.
+     */
+    @Test
+    public void readsFloatNotations() throws IOException {
+        ObjParser parser = parse("""
+                v -1.5e2 .25 +3
+                v 1E-3 -0 7.
+                v 12345678.9 NaN -Infinity
+                vt 0.5
+                """);
+        assertArrayEquals(new float[] {-150, .25f, 3, .001f, -0f, 7, 12345678.9f, Float.NaN, Float.NEGATIVE_INFINITY}, parser.positions.toArray());
+        assertArrayEquals(new float[] {.5f, 0}, parser.textureCoordinates.toArray());
+    }
+
+    /**
+     * Faces with fewer than three corners and faces with malformed indices are dropped without affecting the faces around them.
+     */
+    @Test
+    public void discardsDegenerateAndMalformedFaces() throws IOException {
+        ObjParser parser = parse("""
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                f 1 2
+                f 1 2 x
+                f 1 2 3
+                """);
+        assertEquals(1, parser.faceCount());
+        assertArrayEquals(new int[] {0, 1, 2}, parser.vertexIndices.toArray());
+        assertArrayEquals(new int[] {0, 3}, parser.faceStarts.toArray());
+    }
+
+    /**
+     * Each face gets the material of the last usemtl command, or the default material if it names no known material.
+     */
+    @Test
+    public void assignsMaterials() throws IOException {
+        ObjParser parser = parse("""
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                f 1 2 3
+                usemtl red
+                f 1 2 3
+                usemtl blue
+                f 1 2 3
+                usemtl missing
+                f 1 2 3
+                """);
+        assertArrayEquals(new int[] {0, 1, 2, 0}, parser.faceMaterials.toArray());
+    }
+
+    /**
+     * Splitting a file into ranges at any line boundaries gives the same result as parsing it whole,
+     * including negative indices and materials that refer back across a boundary.
+     */
+    @Test
+    public void mergedRangesMatchWholeFile() throws IOException {
+        String contents = """
+                v 0 0 0
+                v 1 0 0
+                vt 0 0
+                usemtl red
+                v 0 1 0
+                vt 1 0
+                f -3/-2 -2/-1 -1/-1
+                v 1 1 0
+                vt 1 1
+                f 1/1 -1/-1 3
+                usemtl blue
+                v 0 0 1
+                f -5 -4/-3 -1
+                f -2//1 -1 1/-1/1
+                usemtl missing
+                f 1 2 3
+                """;
+        ObjParser whole = parse(contents);
+        List<Long> lineStarts = new ArrayList<>();
+        for (int i = 0; i < contents.length(); ++i) if (i == 0 || contents.charAt(i - 1) == '\n') lineStarts.add((long) i);
+        lineStarts.add((long) contents.length());
+
+        try (FileChannel channel = FileChannel.open(folder.resolve("model.obj"), StandardOpenOption.READ)) {
+            for (int first = 1; first < lineStarts.size() - 1; ++first) {
+                for (int second = first; second < lineStarts.size() - 1; ++second) {
+                    long[] bounds = {0, lineStarts.get(first), lineStarts.get(second), contents.length()};
+                    List<ObjParser> ranges = new ArrayList<>();
+                    for (int i = 0; i < 3; ++i) ranges.add(ObjParser.parseRange(channel, Map.of("red", 1, "blue", 2), 0, null, bounds[i], bounds[i + 1]));
+                    ObjParser merged = ObjParser.merge(ranges, Map.of("red", 1, "blue", 2), 0);
+                    String split = "split at lines " + first + " and " + second;
+                    assertArrayEquals(whole.positions.toArray(), merged.positions.toArray(), split);
+                    assertArrayEquals(whole.textureCoordinates.toArray(), merged.textureCoordinates.toArray(), split);
+                    assertArrayEquals(whole.faceStarts.toArray(), merged.faceStarts.toArray(), split);
+                    assertArrayEquals(whole.vertexIndices.toArray(), merged.vertexIndices.toArray(), split);
+                    assertArrayEquals(whole.textureIndices.toArray(), merged.textureIndices.toArray(), split);
+                    assertArrayEquals(whole.faceMaterials.toArray(), merged.faceMaterials.toArray(), split);
+                }
+            }
+        }
+    }
+}
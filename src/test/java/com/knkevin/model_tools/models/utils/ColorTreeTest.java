@@ -0,0 +1,70 @@
+package com.knkevin.model_tools.models.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a ColorTree finds the same nearest points as a linear search.
+ */
+public class ColorTreeTest {
+    /**
+     * @param coordinates The coordinates of the points, three per point.
+     * @param point The index of a point.
+     * @return The squared distance from the point to the query.
+     */
+    private static float distanceSquared(float[] coordinates, int point, float x, float y, float z) {
+        float dx = coordinates[point * 3] - x, dy = coordinates[point * 3 + 1] - y, dz = coordinates[point * 3 + 2] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Random point sets of many sizes, queried inside and outside the space they cover.
+     * Ties may be broken differently, so the distance of the result is compared rather than its index.
+     */
+    @Test
+    public void matchesLinearSearch() {
+        Random random = new Random(4);
+        for (int count: new int[] {1, 2, 3, 7, 64, 500, 2000}) {
+            float[] coordinates = new float[count * 3];
+            for (int i = 0; i < coordinates.length; ++i) coordinates[i] = random.nextFloat();
+            ColorTree tree = new ColorTree(coordinates);
+            assertEquals(count, tree.size());
+            for (int query = 0; query < 2000; ++query) {
+                float x = random.nextFloat() * 1.4f - .2f, y = random.nextFloat() * 1.4f - .2f, z = random.nextFloat() * 1.4f - .2f;
+                int best = 0;
+                for (int i = 1; i < count; ++i) if (distanceSquared(coordinates, i, x, y, z) < distanceSquared(coordinates, best, x, y, z)) best = i;
+                int found = tree.nearest(x, y, z);
+                assertEquals(distanceSquared(coordinates, best, x, y, z), distanceSquared(coordinates, found, x, y, z), "Query " + query + " of " + count + " points");
+            }
+        }
+    }
+
+    /**
+     * Duplicate points and points that share coordinates along an axis, as block colors often do, are still found.
+     */
+    @Test
+    public void handlesDuplicateCoordinates() {
+        float[] coordinates = new float[300];
+        for (int i = 0; i < 100; ++i) {
+            coordinates[i * 3] = i % 3;
+            coordinates[i * 3 + 1] = i % 5;
+            coordinates[i * 3 + 2] = i % 2;
+        }
+        ColorTree tree = new ColorTree(coordinates);
+        for (int i = 0; i < 100; ++i) {
+            int found = tree.nearest(coordinates[i * 3], coordinates[i * 3 + 1], coordinates[i * 3 + 2]);
+            assertEquals(0, distanceSquared(coordinates, found, coordinates[i * 3], coordinates[i * 3 + 1], coordinates[i * 3 + 2]));
+        }
+    }
+
+    /**
+     * A ColorTree needs at least one point.
+     */
+    @Test
+    public void rejectsEmptyPointSet() {
+        assertThrows(IllegalArgumentException.class, () -> new ColorTree(new float[0]));
+    }
+}
@@ -0,0 +1,39 @@
+package com.knkevin.model_tools.models.utils;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests transforming the vertices of a Mesh.
+ */
+public class MeshTest {
+    /**
+     * Every transformed vertex is bit for bit the same as transforming it with Matrix4f.transformPosition.
+     */
+    @Test
+    public void transformPositionsMatchesMatrix() {
+        Random random = new Random(7);
+        float[] positions = new float[3 * 3000];
+        for (int i = 0; i < positions.length; ++i) positions[i] = (random.nextFloat() - .5f) * 1000;
+        Mesh mesh = Mesh.fromTriangles(positions);
+        for (int trial = 0; trial < 20; ++trial) {
+            Matrix4f matrix = new Matrix4f()
+                    .translate(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 100)
+                    .rotateXYZ(random.nextFloat() * 7, random.nextFloat() * 7, random.nextFloat() * 7)
+                    .scale(random.nextFloat() * 3 + .01f, random.nextFloat() * 3 + .01f, random.nextFloat() * 3 + .01f);
+            float[] transformed = mesh.transformPositions(matrix, null);
+            Vector3f expected = new Vector3f();
+            for (int i = 0; i < mesh.positions.length; i += 3) {
+                matrix.transformPosition(mesh.positions[i], mesh.positions[i+1], mesh.positions[i+2], expected);
+                assertEquals(expected.x, transformed[i]);
+                assertEquals(expected.y, transformed[i+1]);
+                assertEquals(expected.z, transformed[i+2]);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.knkevin.model_tools.models.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests writing Meshes to cache files and reading them back.
+ */
+public class ModelCacheTest {
+    @TempDir
+    Path folder;
+
+    /**
+     * @return A Mesh with a quad and a triangle, partially textured, with two materials.
+     */
+    private static Mesh createMesh() {
+        float[] positions = {0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0, .5f, .5f, 1};
+        float[] textureCoordinates = {0, 0, 1, 0, 1, 1};
+        int[] faceStarts = {0, 4, 7};
+        int[] vertexIndices = {0, 1, 2, 3, 0, 1, 4};
+        int[] textureIndices = {0, 1, 2, -1, 0, 1, 2};
+        int[] faceMaterials = {0, 3};
+        return new Mesh(positions, textureCoordinates, faceStarts, vertexIndices, textureIndices, faceMaterials);
+    }
+
+    /**
+     * @param name The name of the file.
+     * @param contents The contents of the file.
+     * @return The written file.
+     * @throws IOException The file could not be written.
+     */
+    private File write(String name, String contents) throws IOException {
+        return Files.writeString(folder.resolve(name), contents).toFile();
+    }
+
+    /**
+     * @param expected The Mesh that was written.
+     * @param actual The Mesh that was read.
+     */
+    private static void assertMeshEquals(Mesh expected, Mesh actual) {
+        assertArrayEquals(expected.positions, actual.positions);
+        assertArrayEquals(expected.textureCoordinates, actual.textureCoordinates);
+        assertArrayEquals(expected.faceStarts, actual.faceStarts);
+        assertArrayEquals(expected.vertexIndices, actual.vertexIndices);
+        assertArrayEquals(expected.textureIndices, actual.textureIndices);
+        assertArrayEquals(expected.faceMaterials, actual.faceMaterials);
+    }
+
+    /**
+     * Every array of the Mesh and the extra data read back exactly as written.
+     */
+    @Test
+    public void roundTripsMeshAndExtra() throws IOException {
+        File source = write("model.obj", "v 0 0 0"), mtl = write("model.mtl", "newmtl red");
+        Mesh mesh = createMesh();
+        byte[] extra = {1, 2, 3, 4, 5};
+        ModelCache.write(source, mesh, extra, mtl);
+
+        ModelCache.Entry entry = ModelCache.read(source, mtl);
+        assertNotNull(entry);
+        assertMeshEquals(mesh, entry.mesh());
+        assertArrayEquals(extra, entry.extra());
+    }
+
+    /**
+     * Meshes without texture indices or materials, and Meshes without any faces, read back the same.
+     */
+    @Test
+    public void roundTripsOptionalAndEmptyArrays() throws IOException {
+        File source = write("model.stl", "solid");
+        Mesh mesh = new Mesh(new float[] {0, 0, 0, 1, 0, 0, 0, 1, 0}, new float[0], new int[] {0, 3}, new int[] {0, 1, 2}, null, null);
+        ModelCache.write(source, mesh, new byte[0]);
+        ModelCache.Entry entry = ModelCache.read(source);
+        assertNotNull(entry);
+        assertMeshEquals(mesh, entry.mesh());
+        assertNull(entry.mesh().textureIndices);
+        assertNull(entry.mesh().faceMaterials);
+
+        Mesh empty = new Mesh(new float[0], new float[0], new int[] {0}, new int[0], null, null);
+        ModelCache.write(source, empty, new byte[0]);
+        entry = ModelCache.read(source);
+        assertNotNull(entry);
+        assertMeshEquals(empty, entry.mesh());
+    }
+
+    /**
+     * The cache is a miss once the model file or a dependency changes, appears, or disappears.
+     */
+    @Test
+    public void missesWhenSourcesChange() throws IOException {
+        File source = write("model.obj", "v 0 0 0"), mtl = folder.resolve("model.mtl").toFile();
+        ModelCache.write(source, createMesh(), new byte[0], mtl);
+        assertNotNull(ModelCache.read(source, mtl));
+
+        write("model.mtl", "newmtl red");
+        assertNull(ModelCache.read(source, mtl));
+
+        ModelCache.write(source, createMesh(), new byte[0], mtl);
+        write("model.obj", "v 0 0 0 1");
+        assertNull(ModelCache.read(source, mtl));
+
+        ModelCache.write(source, createMesh(), new byte[0], mtl);
+        assertTrue(mtl.delete());
+        assertNull(ModelCache.read(source, mtl));
+    }
+
+    /**
+     * A file that was touched without changing its contents keeps the cache valid.
+     */
+    @Test
+    public void hitsWhenOnlyModificationTimeChanges() throws IOException {
+        File source = write("model.obj", "v 0 0 0");
+        ModelCache.write(source, createMesh(), new byte[0]);
+        assertTrue(source.setLastModified(source.lastModified() - 60_000));
+        assertNotNull(ModelCache.read(source));
+        //The new modification time was recorded, so the contents are not checksummed again.
+        assertNotNull(ModelCache.read(source));
+
+        write("model.obj", "v 0 0 1");
+        assertTrue(source.setLastModified(source.lastModified() - 120_000));
+        assertNull(ModelCache.read(source));
+    }
+
+    /**
+     * Array lengths that do not match the size of the cache file are a miss rather than an attempt to allocate them.
+     */
+    @Test
+    public void missesWhenLengthsDoNotMatchFile() throws IOException {
+        File source = write("model.obj", "v 0 0 0");
+        File cacheFile = ModelCache.getCacheFile(source);
+        ModelCache.write(source, createMesh(), new byte[0]);
+        //The length of the positions follows the magic, version, file count, one file record, and the extra length.
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, Integer.MAX_VALUE), 12 + 25 + 4);
+        }
+        assertNull(ModelCache.read(source));
+
+        ModelCache.write(source, createMesh(), new byte[0]);
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertNull(ModelCache.read(source));
+
+        ModelCache.write(source, createMesh(), new byte[0]);
+        assertNotNull(ModelCache.read(source));
+    }
+}
@@ -0,0 +1,91 @@
+package com.knkevin.model_tools.models.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests sampling a decoded Texture.
+ */
+public class TextureTest {
+    /**
+     * The way colors were looked up before textures were decoded into a Texture, kept to check that sample still matches it.
+     * @param img A BufferedImage representing a texture.
+     * @param x A number 0-1 representing the horizontal position in the texture.
+     * @param y A number 0-1 representing the vertical position in the texture.
+     * @return The color at the location in the texture as an integer.
+     */
+    private static int getColor(BufferedImage img, float x, float y) {
+        y = 1 - y;
+        int tx = (int) (x * img.getWidth()) - 1;
+        tx = (tx % img.getWidth() + img.getWidth()) % img.getWidth();
+        int ty = (int) (y * img.getHeight()) - 1;
+        ty = (ty % img.getHeight() + img.getHeight()) % img.getHeight();
+        return img.getRGB(tx, ty);
+    }
+
+    /**
+     * @param random The source of pixels.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param type The type of the image.
+     * @return An image of random pixels.
+     */
+    private static BufferedImage randomImage(Random random, int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int x = 0; x < width; ++x) for (int y = 0; y < height; ++y) image.setRGB(x, y, random.nextInt());
+        return image;
+    }
+
+    /**
+     * Nearest sampling picks the same pixel as the old lookup, including coordinates outside 0-1 that wrap around.
+     */
+    @Test
+    public void sampleMatchesOldLookup() {
+        Random random = new Random(5);
+        for (int type: new int[] {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR}) {
+            BufferedImage image = randomImage(random, 1 + random.nextInt(40), 1 + random.nextInt(40), type);
+            Texture texture = new Texture(image);
+            for (int i = 0; i < 20000; ++i) {
+                float u = random.nextFloat() * 6 - 3, v = random.nextFloat() * 6 - 3;
+                assertEquals(getColor(image, u, v), texture.sample(u, v), "u = " + u + ", v = " + v);
+            }
+        }
+    }
+
+    /**
+     * Bilinear sampling agrees with nearest sampling where pixels are centered, and stays between the colors of the pixels it blends.
+     */
+    @Test
+    public void bilinearMatchesAtPixelCenters() {
+        Random random = new Random(6);
+        BufferedImage image = randomImage(random, 16, 8, BufferedImage.TYPE_INT_ARGB);
+        Texture texture = new Texture(image);
+        for (int x = 0; x < 16; ++x) {
+            for (int y = 0; y < 8; ++y) {
+                //The center of the pixel that sample switches to at (x + 1) / width.
+                float u = (x + 1.5f) / 16, v = 1 - (y + 1.5f) / 8;
+                assertEquals(texture.sample(u, v), texture.sampleBilinear(u, v));
+            }
+        }
+        BufferedImage halves = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        halves.setRGB(0, 0, 0xFF000000);
+        halves.setRGB(1, 0, 0xFFC8C8C8);
+        int between = new Texture(halves).sampleBilinear(.5f, .5f);
+        assertEquals(0xFF646464, between);
+    }
+
+    /**
+     * The size of a Texture is four bytes per pixel.
+     */
+    @Test
+    public void reportsByteSize() {
+        Texture texture = new Texture(new BufferedImage(10, 7, BufferedImage.TYPE_INT_RGB));
+        assertEquals(10, texture.width);
+        assertEquals(7, texture.height);
+        assertEquals(280, texture.byteSize());
+    }
+}
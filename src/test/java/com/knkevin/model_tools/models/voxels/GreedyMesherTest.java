@@ -0,0 +1,94 @@
+package com.knkevin.model_tools.models.voxels;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the rectangles of the GreedyMesher cover every exposed face exactly once.
+ */
+public class GreedyMesherTest {
+    /**
+     * @param face The index of the face direction in FACE_BITS.
+     * @param slice The coordinate along the normal of the face.
+     * @param u The u-coordinate of the face.
+     * @param w The w-coordinate of the face.
+     * @return The face packed with the coordinates of its voxel.
+     */
+    private static long faceKey(int face, int slice, int u, int w) {
+        long voxel = switch (face >> 1) {
+            case 0 -> VoxelMap.pack(slice, u, w);
+            case 1 -> VoxelMap.pack(w, slice, u);
+            default -> VoxelMap.pack(u, w, slice);
+        };
+        return voxel * 8 + face;
+    }
+
+    /**
+     * @param voxels The voxels to mesh.
+     * @return The number of rectangles, after checking that they cover every exposed face exactly once and nothing else.
+     */
+    private static int assertCoversExposedFaces(VoxelStore voxels) {
+        Set<Long> exposed = new HashSet<>();
+        voxels.forEach((x, y, z, faces) -> {
+            for (int face = 0; face < GreedyMesher.FACE_BITS.length; ++face)
+                if ((faces & GreedyMesher.FACE_BITS[face]) != 0) exposed.add(VoxelMap.pack(x, y, z) * 8 + face);
+        });
+        Set<Long> covered = new HashSet<>();
+        int[] quads = new int[1];
+        GreedyMesher.mesh(voxels, (face, slice, u0, w0, u1, w1) -> {
+            ++quads[0];
+            assertTrue(u0 < u1 && w0 < w1, "Empty rectangle");
+            for (int u = u0; u < u1; ++u)
+                for (int w = w0; w < w1; ++w)
+                    assertTrue(covered.add(faceKey(face, slice, u, w)), "Face covered twice");
+        });
+        assertEquals(exposed, covered);
+        return quads[0];
+    }
+
+    /**
+     * Random voxels, including negative coordinates, are covered exactly.
+     */
+    @Test
+    public void coversRandomVoxels() {
+        Random random = new Random(3);
+        for (int round = 0; round < 30; ++round) {
+            VoxelMap map = new VoxelMap();
+            int size = 2 + random.nextInt(12), count = random.nextInt(size * size * size);
+            for (int i = 0; i < count; ++i) map.put(random.nextInt(size) - size / 2, random.nextInt(size) - size / 2, random.nextInt(size) - size / 2, VoxelMap.ALL_FACES);
+            map.cullAdjacentFaces();
+            assertCoversExposedFaces(map);
+        }
+    }
+
+    /**
+     * Each flat side of a box is merged into a single rectangle.
+     */
+    @Test
+    public void mergesBoxSidesIntoOneQuadEach() {
+        VoxelGrid grid = new VoxelGrid(-3, 0, 5, 6, 1, 20);
+        for (int x = -3; x <= 6; ++x) for (int y = 0; y <= 1; ++y) for (int z = 5; z <= 20; ++z) grid.add(x, y, z);
+        assertEquals(6, assertCoversExposedFaces(grid));
+    }
+
+    /**
+     * Runs of different lengths in consecutive rows are not merged, and a gap in a row splits it.
+     */
+    @Test
+    public void keepsMismatchedRunsApart() {
+        VoxelMap map = new VoxelMap();
+        //An L shape in the z = 0 plane: a row of four voxels on top of a row of two.
+        for (int x = 0; x < 4; ++x) map.put(x, 1, 0, VoxelMap.ALL_FACES);
+        for (int x = 0; x < 2; ++x) map.put(x, 0, 0, VoxelMap.ALL_FACES);
+        //Two voxels with a gap between them.
+        map.put(0, 5, 0, VoxelMap.ALL_FACES);
+        map.put(2, 5, 0, VoxelMap.ALL_FACES);
+        map.cullAdjacentFaces();
+        assertCoversExposedFaces(map);
+    }
+}
@@ -0,0 +1,114 @@
+package com.knkevin.model_tools.models.voxels;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests splitting voxels into sections.
+ */
+public class VoxelSectionsTest {
+    /**
+     * @param random The source of coordinates.
+     * @param count The number of voxels to try to add.
+     * @param range The number of coordinates along each axis, centered on 0.
+     * @return A culled VoxelMap of random voxels.
+     */
+    private static VoxelMap randomVoxels(Random random, int count, int range) {
+        VoxelMap map = new VoxelMap();
+        for (int i = 0; i < count; ++i) map.put(random.nextInt(range) - range / 2, random.nextInt(range) - range / 2, random.nextInt(range) - range / 2, VoxelMap.ALL_FACES);
+        map.cullAdjacentFaces();
+        return map;
+    }
+
+    /**
+     * Every voxel with an exposed face ends up in the section its coordinates shift to, with the same faces, and nowhere else.
+     */
+    @Test
+    public void splitsEveryVoxelIntoItsSection() {
+        VoxelMap voxels = randomVoxels(new Random(3), 5000, 200);
+        VoxelSections sections = VoxelSections.of(voxels);
+
+        Map<Long, Byte> expected = new HashMap<>(), actual = new HashMap<>();
+        voxels.forEach((x, y, z, faces) -> expected.put(VoxelMap.pack(x, y, z), faces));
+        for (VoxelSections.Section section: sections.sections()) {
+            assertSame(section, sections.get(section.key()));
+            section.voxels().forEach((x, y, z, faces) -> {
+                assertEquals(section.key(), VoxelMap.pack(x >> VoxelSections.SHIFT, y >> VoxelSections.SHIFT, z >> VoxelSections.SHIFT));
+                assertNull(actual.put(VoxelMap.pack(x, y, z), faces), "Voxel in two sections");
+            });
+        }
+        assertEquals(expected, actual);
+        assertNull(sections.get(VoxelMap.pack(1000, 1000, 1000)));
+    }
+
+    /**
+     * Sections have the same fingerprint whenever they hold the same voxels, and a different one once a voxel or its faces change.
+     */
+    @Test
+    public void fingerprintsTrackChangedSections() {
+        VoxelMap voxels = randomVoxels(new Random(5), 2000, 100);
+        VoxelSections before = VoxelSections.of(voxels);
+        VoxelSections same = VoxelSections.of(voxels);
+        for (VoxelSections.Section section: before.sections()) assertEquals(section.fingerprint(), same.get(section.key()).fingerprint());
+
+        voxels.put(1000, 1000, 1000, VoxelMap.ALL_FACES);
+        voxels.put(0, 0, 0, (byte) 1);
+        VoxelSections after = VoxelSections.of(voxels);
+        assertEquals(before.size() + 1, after.size());
+        long changed = VoxelMap.pack(0, 0, 0);
+        for (VoxelSections.Section section: before.sections()) {
+            long fingerprint = after.get(section.key()).fingerprint();
+            if (section.key() == changed) assertNotEquals(section.fingerprint(), fingerprint);
+            else assertEquals(section.fingerprint(), fingerprint);
+        }
+    }
+
+    /**
+     * A lone voxel gives six quads at every level of detail, spanning the blocks its level covers.
+     */
+    @Test
+    public void buildsQuadsOfEveryLevel() {
+        VoxelMap voxels = new VoxelMap();
+        voxels.put(3, 0, 0, VoxelMap.ALL_FACES);
+        VoxelSections sections = VoxelSections.of(voxels, 2, null);
+        SectionQuads quads = sections.quads(sections.get(VoxelMap.pack(0, 0, 0)));
+        assertEquals(VoxelSections.MAX_LEVEL - 1, quads.maxLevel());
+        for (int level = 0; level <= quads.maxLevel(); ++level) {
+            assertEquals(24, quads.vertexCount(level));
+            ByteBuffer vertices = quads.vertices(level);
+            float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+            for (int vertex = 0; vertex < 24; ++vertex) {
+                float x = vertices.getFloat(vertex * SectionQuads.VERTEX_SIZE);
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+            }
+            int first = (3 >> level) << level;
+            assertEquals(SectionQuads.edge(first, 2), min, .001f);
+            assertEquals(SectionQuads.edge(first + (1 << level), 2), max, .001f);
+        }
+    }
+
+    /**
+     * Unchanged sections keep the quads of the previous sections, and changed sections are meshed again.
+     */
+    @Test
+    public void reusesQuadsOfUnchangedSections() {
+        VoxelMap voxels = randomVoxels(new Random(7), 2000, 100);
+        VoxelSections before = VoxelSections.of(voxels, 1, null);
+        voxels.put(0, 0, 0, (byte) 1);
+        VoxelSections after = VoxelSections.of(voxels, 1, before);
+        long changed = VoxelMap.pack(0, 0, 0);
+        for (VoxelSections.Section section: after.sections()) {
+            SectionQuads quads = after.quads(section);
+            assertNotNull(quads);
+            if (section.key() == changed) assertNull(before.quads(section));
+            else assertSame(before.quads(before.get(section.key())), quads);
+        }
+    }
+}
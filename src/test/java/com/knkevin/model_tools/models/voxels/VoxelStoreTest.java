@@ -0,0 +1,169 @@
+package com.knkevin.model_tools.models.voxels;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that both kinds of VoxelStore find the same exposed faces as checking every neighbor of every voxel.
+ */
+public class VoxelStoreTest {
+    /**
+     * The offset to the neighbor behind each face, in the order of the face bits -x, +x, -y, +y, -z, +z.
+     */
+    private static final int[][] NEIGHBORS = {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+
+    /**
+     * @param voxels Packed voxel coordinates.
+     * @return The exposed faces of every voxel with at least one, found by checking each neighbor.
+     */
+    private static Map<Long, Byte> bruteForceFaces(Set<Long> voxels) {
+        Map<Long, Byte> faces = new HashMap<>();
+        for (long key: voxels) {
+            int x = VoxelMap.unpackX(key), y = VoxelMap.unpackY(key), z = VoxelMap.unpackZ(key);
+            int mask = 0;
+            for (int face = 0; face < NEIGHBORS.length; ++face) {
+                int[] offset = NEIGHBORS[face];
+                if (!voxels.contains(VoxelMap.pack(x + offset[0], y + offset[1], z + offset[2]))) mask |= GreedyMesher.FACE_BITS[face];
+            }
+            if (mask != 0) faces.put(key, (byte) mask);
+        }
+        return faces;
+    }
+
+    /**
+     * @param store A VoxelStore.
+     * @return The exposed faces of every voxel the VoxelStore sends to a consumer.
+     */
+    private static Map<Long, Byte> storeFaces(VoxelStore store) {
+        Map<Long, Byte> faces = new HashMap<>();
+        store.forEach((x, y, z, mask) -> assertNull(faces.put(VoxelMap.pack(x, y, z), mask), "Voxel sent twice"));
+        return faces;
+    }
+
+    /**
+     * @param random The source of coordinates.
+     * @param count The number of voxels to try to add.
+     * @param minX The minimum x-coordinate.
+     * @param sizeX The number of x-coordinates.
+     * @param sizeYZ The number of y and z-coordinates, starting at -sizeYZ / 2.
+     * @return Packed random voxel coordinates.
+     */
+    private static Set<Long> randomVoxels(Random random, int count, int minX, int sizeX, int sizeYZ) {
+        Set<Long> voxels = new HashSet<>();
+        for (int i = 0; i < count; ++i)
+            voxels.add(VoxelMap.pack(minX + random.nextInt(sizeX), random.nextInt(sizeYZ) - sizeYZ / 2, random.nextInt(sizeYZ) - sizeYZ / 2));
+        return voxels;
+    }
+
+    /**
+     * A culled VoxelMap reports the faces not touching another voxel, and skips voxels that are completely covered.
+     */
+    @Test
+    public void mapCullsAdjacentFaces() {
+        Random random = new Random(1);
+        for (int round = 0; round < 20; ++round) {
+            Set<Long> voxels = randomVoxels(random, 2000, -10, 20, 20);
+            VoxelMap map = new VoxelMap();
+            for (long key: voxels) map.put(VoxelMap.unpackX(key), VoxelMap.unpackY(key), VoxelMap.unpackZ(key), VoxelMap.ALL_FACES);
+            map.cullAdjacentFaces();
+            assertEquals(voxels.size(), map.size());
+            assertEquals(bruteForceFaces(voxels), storeFaces(map));
+        }
+    }
+
+    /**
+     * A VoxelGrid finds the same faces 64 voxels at a time, including across word boundaries and at the edges of its bounding box.
+     */
+    @Test
+    public void gridMatchesBruteForce() {
+        Random random = new Random(2);
+        for (int round = 0; round < 20; ++round) {
+            //Rows of 1 to 200 cells, so that rows have one to four words and some end exactly on a word boundary.
+            int sizeX = round == 0 ? 64 : round == 1 ? 128 : 1 + random.nextInt(200), minX = random.nextInt(200) - 100;
+            Set<Long> voxels = randomVoxels(random, sizeX * 40, minX, sizeX, 8);
+            VoxelGrid grid = new VoxelGrid(minX, -4, -4, minX + sizeX - 1, 3, 3);
+            for (long key: voxels) grid.add(VoxelMap.unpackX(key), VoxelMap.unpackY(key), VoxelMap.unpackZ(key));
+            assertEquals(voxels.size(), grid.size());
+            for (long key: voxels) assertTrue(grid.contains(VoxelMap.unpackX(key), VoxelMap.unpackY(key), VoxelMap.unpackZ(key)));
+            assertFalse(grid.contains(minX - 1, 0, 0));
+            assertFalse(grid.contains(minX + sizeX, 0, 0));
+            assertEquals(bruteForceFaces(voxels), storeFaces(grid));
+        }
+    }
+
+    /**
+     * A solid cube only exposes its outer shell.
+     */
+    @Test
+    public void solidCubeExposesOnlyItsShell() {
+        VoxelGrid grid = new VoxelGrid(0, 0, 0, 69, 69, 69);
+        for (int x = 0; x < 70; ++x) for (int y = 0; y < 70; ++y) for (int z = 0; z < 70; ++z) grid.add(x, y, z);
+        int[] count = new int[1];
+        grid.forEach((x, y, z, faces) -> {
+            ++count[0];
+            assertTrue(x == 0 || y == 0 || z == 0 || x == 69 || y == 69 || z == 69);
+        });
+        assertEquals(70 * 70 * 70 - 68 * 68 * 68, count[0]);
+    }
+
+    /**
+     * Sparse voxels are stored in a VoxelMap and dense voxels in a VoxelGrid, and either way duplicates are only stored once.
+     */
+    @Test
+    public void ofPicksStoreByDensity() {
+        VoxelBuffer sparse = new VoxelBuffer(4, false);
+        sparse.accept(0, 0, 0, 0, 0, 0);
+        sparse.accept(1000, 1000, 1000, 0, 0, 0);
+        sparse.accept(0, 0, 0, 1, 0, 0);
+        VoxelStore sparseStore = VoxelStore.of(sparse);
+        assertInstanceOf(VoxelMap.class, sparseStore);
+        assertEquals(2, sparseStore.size());
+
+        VoxelBuffer dense = new VoxelBuffer(64, false);
+        for (int x = 0; x < 4; ++x) for (int y = 0; y < 4; ++y) for (int z = 0; z < 4; ++z) dense.accept(x, y, z, 0, 0, 0);
+        dense.accept(1, 1, 1, 1, 0, 0);
+        VoxelStore denseStore = VoxelStore.of(dense);
+        assertInstanceOf(VoxelGrid.class, denseStore);
+        assertEquals(64, denseStore.size());
+        assertEquals(4 * 4 * 4 - 2 * 2 * 2, storeFaces(denseStore).size());
+    }
+
+    /**
+     * Duplicates do not count towards the density, so a few distinct voxels reported by many faces stay sparse.
+     */
+    @Test
+    public void ofIgnoresDuplicatesForDensity() {
+        VoxelBuffer voxels = new VoxelBuffer(16, false);
+        for (int face = 0; face < 8; ++face) {
+            voxels.accept(0, 0, 0, face, 0, 0);
+            voxels.accept(9, 9, 9, face, 0, 0);
+        }
+        //1000 cells are within 128 cells per voxel of all 16 voxels, but not of the 2 distinct ones.
+        VoxelStore store = VoxelStore.of(voxels);
+        assertInstanceOf(VoxelMap.class, store);
+        assertEquals(2, store.size());
+    }
+
+    /**
+     * Coordinates that cannot be packed are rejected instead of aliasing other voxels, and are never reported as contained.
+     */
+    @Test
+    public void mapRejectsOutOfRangeCoordinates() {
+        VoxelMap map = new VoxelMap();
+        map.put(VoxelMap.MIN_COORDINATE, 0, VoxelMap.MAX_COORDINATE, VoxelMap.ALL_FACES);
+        assertThrows(IllegalArgumentException.class, () -> map.put(VoxelMap.MAX_COORDINATE + 1, 0, 0, VoxelMap.ALL_FACES));
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, VoxelMap.MIN_COORDINATE - 1, 0, VoxelMap.ALL_FACES));
+        assertEquals(1, map.size());
+        //MAX_COORDINATE + 1 would pack to the same key as MIN_COORDINATE.
+        assertFalse(map.contains(VoxelMap.MIN_COORDINATE, 0, VoxelMap.MAX_COORDINATE + 1));
+        map.cullAdjacentFaces();
+        assertEquals(VoxelMap.ALL_FACES, map.getOrDefault(VoxelMap.MIN_COORDINATE, 0, VoxelMap.MAX_COORDINATE, (byte) 0));
+    }
+}
@@ -0,0 +1,101 @@
+package com.knkevin.model_tools.models.voxels;
+
+import com.knkevin.model_tools.models.utils.Mesh;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that voxelized triangles have no gaps and place points in the voxels their coordinates truncate to.
+ */
+public class VoxelizerTest {
+    /**
+     * @param corners The corners of the triangles, nine floats per triangle.
+     * @return The distinct voxels of the triangles, packed.
+     */
+    private static Set<Long> voxelize(float[] corners) {
+        return voxelize(Mesh.fromTriangles(corners), new Matrix4f());
+    }
+
+    /**
+     * @param mesh The Mesh to voxelize.
+     * @param matrix The transformation to apply to each vertex.
+     * @return The distinct voxels of the Mesh, packed.
+     */
+    private static Set<Long> voxelize(Mesh mesh, Matrix4f matrix) {
+        VoxelBuffer buffer = Voxelizer.voxelize(mesh, matrix, false, null);
+        Set<Long> voxels = new HashSet<>();
+        for (int i = 0; i < buffer.size(); ++i) voxels.add(VoxelMap.pack(buffer.getX(i), buffer.getY(i), buffer.getZ(i)));
+        return voxels;
+    }
+
+    /**
+     * Every point sampled on random triangles, including flat and axis-aligned ones, lies in a voxel that was produced.
+     */
+    @Test
+    public void coversEveryPointOfTriangles() {
+        Random random = new Random(7);
+        for (int triangle = 0; triangle < 300; ++triangle) {
+            float[] c = new float[9];
+            for (int i = 0; i < 9; ++i) c[i] = (random.nextFloat() - .5f) * 20;
+            //Some triangles lie in an axis-aligned plane, some are slivers, and some are on a single line.
+            switch (triangle % 4) {
+                case 1 -> c[5] = c[8] = c[2];
+                case 2 -> { c[6] = c[3] + .001f; c[7] = c[4]; }
+                case 3 -> { c[6] = (c[0] + c[3]) / 2; c[7] = (c[1] + c[4]) / 2; c[8] = (c[2] + c[5]) / 2; }
+            }
+            Set<Long> voxels = voxelize(c);
+            for (int sample = 0; sample < 5000; ++sample) {
+                float p = random.nextFloat(), q = random.nextFloat();
+                if (p + q > 1) {
+                    p = 1 - p;
+                    q = 1 - q;
+                }
+                float x = c[0] + (c[3] - c[0]) * p + (c[6] - c[0]) * q;
+                float y = c[1] + (c[4] - c[1]) * p + (c[7] - c[1]) * q;
+                float z = c[2] + (c[5] - c[2]) * p + (c[8] - c[2]) * q;
+                assertTrue(voxels.contains(VoxelMap.pack((int) x, (int) y, (int) z)), "Triangle " + triangle + " misses (" + x + ", " + y + ", " + z + ")");
+            }
+        }
+    }
+
+    /**
+     * A small triangle is placed in the voxel its points truncate to, so voxel 0 spans (-1, 1) along each axis.
+     */
+    @Test
+    public void truncatesTowardsZero() {
+        assertEquals(Set.of(VoxelMap.pack(2, 3, 4)), voxelize(new float[] {2.2f, 3.2f, 4.2f, 2.4f, 3.2f, 4.2f, 2.2f, 3.4f, 4.2f}));
+        assertEquals(Set.of(VoxelMap.pack(-2, -3, -4)), voxelize(new float[] {-2.2f, -3.2f, -4.2f, -2.4f, -3.2f, -4.2f, -2.2f, -3.4f, -4.2f}));
+        assertEquals(Set.of(VoxelMap.pack(0, 0, 0)), voxelize(new float[] {-.6f, -.6f, .2f, .6f, -.6f, .2f, -.6f, .6f, .2f}));
+    }
+
+    /**
+     * A coarse pass shrunk by its voxel size contains the coarse voxel of every block of the full pass,
+     * and each coarse voxel covers exactly the blocks that divide into it, so passes of different sizes line up.
+     */
+    @Test
+    public void coarsePassesLineUpWithBlocks() {
+        Random random = new Random(11);
+        float[] corners = new float[9 * 200];
+        for (int i = 0; i < corners.length; ++i) corners[i] = (random.nextFloat() - .5f) * 60;
+        Mesh mesh = Mesh.fromTriangles(corners);
+        Matrix4f matrix = new Matrix4f().translate(.3f, -.7f, .1f).rotateXYZ(.4f, 1.1f, -.3f);
+        Set<Long> blocks = voxelize(mesh, matrix);
+        for (int voxelSize = 2; voxelSize <= 8; voxelSize *= 2) {
+            Set<Long> coarse = voxelize(mesh, new Matrix4f().scaling(1f / voxelSize).mul(matrix));
+            for (long block: blocks) {
+                int x = VoxelMap.unpackX(block), y = VoxelMap.unpackY(block), z = VoxelMap.unpackZ(block);
+                assertTrue(coarse.contains(VoxelMap.pack(x / voxelSize, y / voxelSize, z / voxelSize)), "Voxel size " + voxelSize + " misses block (" + x + ", " + y + ", " + z + ")");
+            }
+            for (int block = -40; block <= 40; ++block) {
+                int voxel = block / voxelSize;
+                assertTrue(VoxelSnapshot.firstBlock(voxel, voxelSize) <= block && block < VoxelSnapshot.firstBlock(voxel + 1, voxelSize), "Voxel size " + voxelSize + " block " + block);
+            }
+        }
+    }
+}